@@ -0,0 +1,241 @@
+package benchmarks;
+
+import Gameps.AabbTreeIndex;
+import Gameps.CollisionCounters;
+import Gameps.CollisionIndex;
+import Gameps.CollisionInfo;
+import Gameps.GameEnvironment;
+import Gameps.LinearScanIndex;
+import Gameps.UniformGridIndex;
+import Geometry.Line;
+import Geometry.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sprites.Block;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * CollisionIndexBenchmark measures the cost of a single closest-collision query against the
+ * number of blocks in the world, for every collision index on exactly the same generated
+ * blocks and trajectories. The world grows with the number of blocks, so the blocks always
+ * cover about a quarter of it, like in the game. The results give the time of a query in
+ * nanoseconds, and -prof gc adds the bytes allocated per query.
+ * Any other CollisionIndex can be compared by passing its class name as the index parameter,
+ * as long as it has a public constructor with no arguments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class CollisionIndexBenchmark {
+    // A power of two, so the next trajectory is found with a mask
+    private static final int QUERIES = 1024;
+    private static final double BLOCK_WIDTH = 50;
+    private static final double BLOCK_HEIGHT = 20;
+    private static final double FILL = 0.25;
+    private static final double CELL_SIZE = 50;
+    private static final double BALL_RADIUS = 5;
+    private static final int BLOCKS_PER_CLUSTER = 200;
+
+    /**
+     * The way the blocks are spread over the world.
+     */
+    public enum Layout {
+        /** Evenly spaced rows of blocks, like a level. */
+        GRID,
+        /** Anywhere, with no regard to each other, so some overlap. */
+        RANDOM,
+        /** In dense clumps around a few random centers, with empty space between them. */
+        CLUSTERED
+    }
+
+    /**
+     * The kind of query.
+     */
+    public enum Query {
+        /** A ball's move in a single step. */
+        SHORT,
+        /** A ray cast of a point up to half the width of the world. */
+        RAY
+    }
+
+    @Param({"linear", "grid", "tree"})
+    private String index;
+
+    @Param({"100", "1000", "10000", "100000", "1000000"})
+    private int blocks;
+
+    @Param({"GRID", "RANDOM", "CLUSTERED"})
+    private Layout layout;
+
+    @Param({"SHORT", "RAY"})
+    private Query query;
+
+    private GameEnvironment environment;
+    private Line[] trajectories;
+    private double radius;
+    private int next;
+
+    /**
+     * Generates the world and the trajectories, with the same seed on every run.
+     *
+     * @throws ReflectiveOperationException if a custom index cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        // Keep the blocks covering a fixed part of a 4:3 world
+        double area = this.blocks * BLOCK_WIDTH * BLOCK_HEIGHT / FILL;
+        double width = Math.sqrt(area * 4 / 3);
+        double height = width * 3 / 4;
+        this.environment = new GameEnvironment(createIndex(this.index, width, height));
+        Random random = new Random(42);
+        switch (this.layout) {
+            case GRID:
+                addGrid(width, height);
+                break;
+            case RANDOM:
+                addRandom(random, width, height);
+                break;
+            default:
+                addClustered(random, width, height);
+                break;
+        }
+        if (this.query == Query.SHORT) {
+            this.trajectories = Trajectories.generate(random, QUERIES, Trajectories.Shape.MIXED, width, height,
+                    Trajectories.MIN_STEP, Trajectories.MAX_STEP);
+            this.radius = BALL_RADIUS;
+        } else {
+            this.trajectories = Trajectories.generate(random, QUERIES, Trajectories.Shape.MIXED, width, height,
+                    0, width / 2);
+            this.radius = 0;
+        }
+        this.environment.getCounters().reset();
+    }
+
+    /**
+     * Prints how much work an average query did, to tell a slow index from a busy one.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        CollisionCounters counters = this.environment.getCounters();
+        System.out.printf("%n%s: %.2f collidables tested and %.2f cells or nodes visited per query%n",
+                this.index, counters.collidablesPerQuery(), counters.nodesPerQuery());
+    }
+
+    /**
+     * Creates the collision index to measure.
+     *
+     * @param name   linear, grid or tree, or the class name of any other CollisionIndex
+     * @param width  the width of the world
+     * @param height the height of the world
+     * @return an empty collision index
+     * @throws ReflectiveOperationException if a custom index cannot be created
+     */
+    private static CollisionIndex createIndex(String name, double width, double height)
+            throws ReflectiveOperationException {
+        switch (name) {
+            case "linear":
+                return new LinearScanIndex();
+            case "grid":
+                // A cell of room around the world, so blocks on its border are not overflow
+                return new UniformGridIndex(-CELL_SIZE, -CELL_SIZE, width + 2 * CELL_SIZE, height + 2 * CELL_SIZE,
+                        CELL_SIZE);
+            case "tree":
+                return new AabbTreeIndex();
+            default:
+                return (CollisionIndex) Class.forName(name).getConstructor().newInstance();
+        }
+    }
+
+    /**
+     * Adds the blocks in evenly spaced rows that fill the world, like a level.
+     *
+     * @param width  the width of the world
+     * @param height the height of the world
+     */
+    private void addGrid(double width, double height) {
+        int perRow = (int) Math.ceil(width / (BLOCK_WIDTH * 2));
+        int rows = (this.blocks + perRow - 1) / perRow;
+        double spacingX = width / perRow;
+        double spacingY = height / rows;
+        for (int i = 0; i < this.blocks; i++) {
+            addBlock((i % perRow) * spacingX, (i / perRow) * spacingY);
+        }
+    }
+
+    /**
+     * Adds the blocks at random places.
+     *
+     * @param random the source of randomness
+     * @param width  the width of the world
+     * @param height the height of the world
+     */
+    private void addRandom(Random random, double width, double height) {
+        for (int i = 0; i < this.blocks; i++) {
+            addBlock(random.nextDouble() * (width - BLOCK_WIDTH), random.nextDouble() * (height - BLOCK_HEIGHT));
+        }
+    }
+
+    /**
+     * Adds the blocks in clusters around random centers.
+     *
+     * @param random the source of randomness
+     * @param width  the width of the world
+     * @param height the height of the world
+     */
+    private void addClustered(Random random, double width, double height) {
+        int clusters = Math.max(1, this.blocks / BLOCKS_PER_CLUSTER);
+        double[] centers = new double[clusters * 2];
+        for (int c = 0; c < clusters; c++) {
+            centers[2 * c] = random.nextDouble() * width;
+            centers[2 * c + 1] = random.nextDouble() * height;
+        }
+        // A cluster spreads over about a quarter of the area its blocks would cover side by side
+        double spread = Math.sqrt(BLOCKS_PER_CLUSTER * BLOCK_WIDTH * BLOCK_HEIGHT) / 2;
+        for (int i = 0; i < this.blocks; i++) {
+            int c = random.nextInt(clusters);
+            double x = centers[2 * c] + random.nextGaussian() * spread;
+            double y = centers[2 * c + 1] + random.nextGaussian() * spread;
+            addBlock(Math.max(0, Math.min(x, width - BLOCK_WIDTH)), Math.max(0, Math.min(y, height - BLOCK_HEIGHT)));
+        }
+    }
+
+    /**
+     * Adds a single block to the world.
+     *
+     * @param x the x-coordinate of the upper-left corner of the block
+     * @param y the y-coordinate of the upper-left corner of the block
+     */
+    private void addBlock(double x, double y) {
+        this.environment.addCollidable(new Block(new Point(x, y), BLOCK_WIDTH, BLOCK_HEIGHT, Color.GRAY));
+    }
+
+    /**
+     * Measures a single closest-collision query.
+     *
+     * @return the closest collision, or null
+     */
+    @Benchmark
+    public CollisionInfo closestCollision() {
+        this.next = (this.next + 1) & (QUERIES - 1);
+        return this.environment.getClosestCollision(this.trajectories[this.next], this.radius);
+    }
+}
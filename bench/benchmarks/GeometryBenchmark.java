@@ -0,0 +1,145 @@
+package benchmarks;
+
+import Gameps.Velocity;
+import Geometry.Line;
+import Geometry.Point;
+import Geometry.Rectangle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * GeometryBenchmark measures the geometry kernels the collision code is built on, over
+ * trajectories the size of a ball's move in a single step. Every benchmark walks through a
+ * table of generated inputs, so the JIT cannot fold the work into a constant and the branches
+ * see a realistic mix of hits and misses. Run it with -prof gc to see the allocation rate too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryBenchmark {
+    // A power of two, so the next input is found with a mask
+    private static final int SIZE = 1024;
+    private static final double WIDTH = 800;
+    private static final double HEIGHT = 600;
+    private static final double BLOCK_WIDTH = 50;
+    private static final double BLOCK_HEIGHT = 20;
+
+    @Param({"RANDOM", "VERTICAL", "HORIZONTAL", "MIXED"})
+    private Trajectories.Shape shape;
+
+    private Line[] trajectories;
+    private Line[] edges;
+    private Rectangle[] blocks;
+    private Point[] points;
+    private Point[] others;
+    private Velocity[] velocities;
+    private int next;
+
+    /**
+     * Generates the inputs, with the same seed on every run.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        this.trajectories = Trajectories.generate(random, SIZE, this.shape, WIDTH, HEIGHT,
+                Trajectories.MIN_STEP, Trajectories.MAX_STEP);
+        this.edges = Trajectories.nearbyEdges(random, this.trajectories, BLOCK_WIDTH);
+        this.blocks = new Rectangle[SIZE];
+        this.points = new Point[SIZE];
+        this.others = new Point[SIZE];
+        this.velocities = new Velocity[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            // A block placed around the end of the trajectory, so about half of them are hit
+            Point end = this.trajectories[i].end();
+            this.blocks[i] = new Rectangle(new Point(end.getX() - random.nextDouble() * BLOCK_WIDTH * 1.5,
+                    end.getY() - random.nextDouble() * BLOCK_HEIGHT * 1.5), BLOCK_WIDTH, BLOCK_HEIGHT);
+            this.points[i] = this.trajectories[i].start();
+            this.others[i] = end;
+            Point start = this.trajectories[i].start();
+            this.velocities[i] = new Velocity(end.getX() - start.getX(), end.getY() - start.getY());
+        }
+    }
+
+    /**
+     * Returns the index of the next input.
+     *
+     * @return the index of the next input
+     */
+    private int next() {
+        this.next = (this.next + 1) & (SIZE - 1);
+        return this.next;
+    }
+
+    /**
+     * Measures Line.intersectionWith against a nearby block edge.
+     *
+     * @return the intersection point, or null
+     */
+    @Benchmark
+    public Point lineIntersectionWith() {
+        int i = next();
+        return this.trajectories[i].intersectionWith(this.edges[i]);
+    }
+
+    /**
+     * Measures Line.isIntersecting against a nearby block edge.
+     *
+     * @return true if the lines intersect
+     */
+    @Benchmark
+    public boolean lineIsIntersecting() {
+        int i = next();
+        return this.trajectories[i].isIntersecting(this.edges[i]);
+    }
+
+    /**
+     * Measures Rectangle.getCollisionPoint against a nearby block.
+     *
+     * @return the collision points
+     */
+    @Benchmark
+    public List<Point> rectangleGetCollisionPoint() {
+        int i = next();
+        return this.blocks[i].getCollisionPoint(this.trajectories[i]);
+    }
+
+    /**
+     * Measures Point.distance.
+     *
+     * @return the distance
+     */
+    @Benchmark
+    public double pointDistance() {
+        int i = next();
+        return this.points[i].distance(this.others[i]);
+    }
+
+    /**
+     * Measures Velocity.applyToPoint.
+     *
+     * @return the moved point
+     */
+    @Benchmark
+    public Point velocityApplyToPoint() {
+        int i = next();
+        return this.velocities[i].applyToPoint(this.points[i]);
+    }
+}
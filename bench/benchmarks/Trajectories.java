@@ -0,0 +1,119 @@
+package benchmarks;
+
+import Geometry.Line;
+
+import java.util.Random;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * Trajectories generates the segments the benchmarks query with. Every generator is seeded,
+ * so two runs, or two implementations compared in the same run, see exactly the same data.
+ * Short trajectories are the size of a ball's move in a single step, and long ones are ray
+ * casts that may cross the whole world.
+ */
+public final class Trajectories {
+    /**
+     * The direction of the generated trajectories.
+     */
+    public enum Shape {
+        /** Any direction. */
+        RANDOM,
+        /** Straight up or down, the case where a slope would be infinite. */
+        VERTICAL,
+        /** Straight left or right, parallel to the top and bottom edges of every block. */
+        HORIZONTAL,
+        /** A quarter vertical, a quarter horizontal and the rest in any direction. */
+        MIXED
+    }
+
+    /** The shortest move of a ball in a single step. */
+    public static final double MIN_STEP = 2;
+    /** The longest move of a ball in a single step. */
+    public static final double MAX_STEP = 15;
+
+    /**
+     * No instances, only static generators.
+     */
+    private Trajectories() {
+    }
+
+    /**
+     * Generates trajectories that start anywhere inside the world.
+     *
+     * @param random    the source of randomness
+     * @param count     the number of trajectories
+     * @param shape     the direction of the trajectories
+     * @param width     the width of the world
+     * @param height    the height of the world
+     * @param minLength the shortest trajectory
+     * @param maxLength the longest trajectory
+     * @return the trajectories
+     */
+    public static Line[] generate(Random random, int count, Shape shape, double width, double height,
+                                  double minLength, double maxLength) {
+        Line[] lines = new Line[count];
+        for (int i = 0; i < count; i++) {
+            double x = random.nextDouble() * width;
+            double y = random.nextDouble() * height;
+            lines[i] = from(random, x, y, shape, minLength + random.nextDouble() * (maxLength - minLength));
+        }
+        return lines;
+    }
+
+    /**
+     * Generates a trajectory of the given shape and length from a start point.
+     *
+     * @param random the source of randomness
+     * @param x      the x-coordinate of the start
+     * @param y      the y-coordinate of the start
+     * @param shape  the direction of the trajectory
+     * @param length the length of the trajectory
+     * @return the trajectory
+     */
+    public static Line from(Random random, double x, double y, Shape shape, double length) {
+        Shape actual = shape;
+        if (shape == Shape.MIXED) {
+            int pick = random.nextInt(4);
+            actual = pick == 0 ? Shape.VERTICAL : pick == 1 ? Shape.HORIZONTAL : Shape.RANDOM;
+        }
+        double sign = random.nextBoolean() ? 1 : -1;
+        switch (actual) {
+            case VERTICAL:
+                return new Line(x, y, x, y + sign * length);
+            case HORIZONTAL:
+                return new Line(x, y, x + sign * length, y);
+            default:
+                double angle = random.nextDouble() * 2 * Math.PI;
+                return new Line(x, y, x + Math.cos(angle) * length, y + Math.sin(angle) * length);
+        }
+    }
+
+    /**
+     * Generates, for every trajectory, an axis-aligned block edge near it, like the edges the
+     * game actually tests a ball against. Half of the edges are placed across the trajectory
+     * and half are moved past its end, so hits and misses are about equally common.
+     *
+     * @param random       the source of randomness
+     * @param trajectories the trajectories to pair the edges with
+     * @param edgeLength   the length of every edge
+     * @return the edges, one per trajectory
+     */
+    public static Line[] nearbyEdges(Random random, Line[] trajectories, double edgeLength) {
+        Line[] edges = new Line[trajectories.length];
+        for (int i = 0; i < trajectories.length; i++) {
+            Line trajectory = trajectories[i];
+            double t = random.nextDouble();
+            double x = trajectory.start().getX() + t * (trajectory.end().getX() - trajectory.start().getX());
+            double y = trajectory.start().getY() + t * (trajectory.end().getY() - trajectory.start().getY());
+            double shift = random.nextBoolean() ? 0 : (random.nextBoolean() ? 1 : -1) * (trajectory.length() + 1);
+            double along = (random.nextDouble() - 0.5) * edgeLength * 0.9;
+            if (random.nextBoolean()) {
+                edges[i] = new Line(x + along - edgeLength / 2, y + shift, x + along + edgeLength / 2, y + shift);
+            } else {
+                edges[i] = new Line(x + shift, y + along - edgeLength / 2, x + shift, y + along + edgeLength / 2);
+            }
+        }
+        return edges;
+    }
+}
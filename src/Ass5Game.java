@@ -1,18 +1,62 @@
 import Gameps.Game;
+import Gameps.HeadlessDisplay;
+import Gameps.ScriptedKeyboard;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Paths;
 
 /** Author: Ofek Mazor
  * ID: 328285705
  * The Ass3Game class is responsible for starting the Arkanoid game.
  * It creates an instance of the Gameps.Game class, initializes it, and starts the game.
+ * With --record=FILE the game is recorded into FILE, and with --replay=FILE a recorded game
+ * is played back with no display, as fast as possible. With --level=FILE the game is played on
+ * the blocks of a level file, and with --save-level=FILE the stock level is written to FILE.
  */
 public class Ass5Game {
     /**
      * The main method to start the game.
      *
-     * @param args command line arguments (not used).
+     * @param args command line arguments: --record=FILE, --replay=FILE, --level=FILE or
+     *             --save-level=FILE, or none.
+     * @throws IOException if the recording or the level cannot be written or read
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].startsWith("--replay=")) {
+            try (InputStream in = new FileInputStream(args[0].substring("--replay=".length()))) {
+                Game game = Game.replay(in);
+                long start = System.nanoTime();
+                long steps = game.runHeadless(Long.MAX_VALUE);
+                double millis = (System.nanoTime() - start) / 1e6;
+                System.out.printf("Replayed %d steps in %.1f ms, score %d, %d balls left%n",
+                        steps, millis, game.getScore(), game.getRemainingBalls());
+            }
+            return;
+        }
         Game game = new Game();
+        if (args.length > 0 && args[0].startsWith("--save-level=")) {
+            game.initialize(new HeadlessDisplay(800, 600), new ScriptedKeyboard());
+            game.saveLevel(Paths.get(args[0].substring("--save-level=".length())));
+            return;
+        }
+        if (args.length > 0 && args[0].startsWith("--level=")) {
+            game.initialize(Paths.get(args[0].substring("--level=".length())));
+            game.run();
+            return;
+        }
+        if (args.length > 0 && args[0].startsWith("--record=")) {
+            try (OutputStream out = new FileOutputStream(args[0].substring("--record=".length()))) {
+                game.startRecording(out);
+                game.initialize();
+                game.run();
+                game.stopRecording();
+            }
+            return;
+        }
         game.initialize();
         game.run();
 
@@ -0,0 +1,574 @@
+package Gameps;
+
+import Geometry.Line;
+import Geometry.Rectangle;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * AabbTreeIndex is a dynamic bounding volume hierarchy: a binary tree whose leaves hold the
+ * collidables and whose inner nodes hold the bounding box of their children. The tree is kept
+ * balanced with rotations, so adding and removing a collidable takes O(log n). Queries visit
+ * the nodes nearest-first along the trajectory and stop once no remaining node can hold a
+ * closer hit. Unlike a grid, the tree needs no world bounds or cell size, so it copes well
+ * with layouts of mixed sizes.
+ */
+public class AabbTreeIndex implements CollisionIndex {
+    // Leaf boxes are slightly larger than their rectangles, so that collision points that land
+    // exactly on a rectangle edge are never rejected by rounding errors.
+    private static final double MARGIN = 0.001;
+    // The cells of the Morton curve along each axis when a batch is built at once
+    private static final int MORTON_CELLS = 1 << 16;
+    private Node root;
+    // The inner node freed by the last removal, reused by the next insertion so that moving
+    // a collidable allocates nothing
+    private Node spare;
+    private Map<Collidable, Node> leaves;
+    // Every thread gets its own query heap, so queries may run in parallel as long as
+    // nothing modifies the tree meanwhile
+    private final ThreadLocal<Heap> heaps = ThreadLocal.withInitial(Heap::new);
+
+    /**
+     * Constructs an empty AabbTreeIndex.
+     */
+    public AabbTreeIndex() {
+        this.leaves = new IdentityHashMap<>();
+    }
+
+    @Override
+    public void add(Collidable c, long order) {
+        Node leaf = new Node();
+        leaf.collidable = c;
+        leaf.order = order;
+        fitLeaf(leaf);
+        this.leaves.put(c, leaf);
+        insertLeaf(leaf);
+    }
+
+    @Override
+    public void remove(Collidable c) {
+        Node leaf = this.leaves.remove(c);
+        if (leaf != null) {
+            removeLeaf(leaf);
+        }
+    }
+
+    @Override
+    public void update(Collidable c) {
+        Node leaf = this.leaves.get(c);
+        if (leaf != null) {
+            removeLeaf(leaf);
+            fitLeaf(leaf);
+            insertLeaf(leaf);
+        }
+    }
+
+    /**
+     * Adds many collidables at once. A batch at least as large as the tree is not inserted
+     * leaf by leaf: the whole tree is built again from its old and new leaves, sorted along
+     * a Morton curve through their centers and split in halves, so nearby leaves share their
+     * subtrees. This takes a single sort, and the tree comes out fully balanced, which inserting
+     * leaves one by one in an unlucky order does not guarantee.
+     *
+     * @param collidables the collidable objects to add
+     * @param count       the number of objects to add, from the start of the array
+     * @param firstOrder  the insertion order of the first object, the others following it
+     */
+    @Override
+    public void addAll(Collidable[] collidables, int count, long firstOrder) {
+        if (count == 0) {
+            return;
+        }
+        if (count < this.leaves.size()) {
+            CollisionIndex.super.addAll(collidables, count, firstOrder);
+            return;
+        }
+        Node[] all = new Node[this.leaves.size() + count];
+        int n = 0;
+        for (Node leaf : this.leaves.values()) {
+            all[n++] = leaf;
+        }
+        Map<Collidable, Node> grown = new IdentityHashMap<>(n + count);
+        grown.putAll(this.leaves);
+        this.leaves = grown;
+        for (int i = 0; i < count; i++) {
+            Node leaf = new Node();
+            leaf.collidable = collidables[i];
+            leaf.order = firstOrder + i;
+            fitLeaf(leaf);
+            this.leaves.put(collidables[i], leaf);
+            all[n++] = leaf;
+        }
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (Node leaf : all) {
+            double x = leaf.minX + leaf.maxX;
+            double y = leaf.minY + leaf.maxY;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        // Every key holds the Morton code of a leaf's center above the leaf's position in the array.
+        // The code fills all 32 high bits, so the sign bit is flipped to make the signed sort
+        // order the unsigned one; otherwise the codes with their top bit set would sort first.
+        double scaleX = maxX > minX ? MORTON_CELLS / (maxX - minX) : 0;
+        double scaleY = maxY > minY ? MORTON_CELLS / (maxY - minY) : 0;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int cellX = (int) ((all[i].minX + all[i].maxX - minX) * scaleX);
+            int cellY = (int) ((all[i].minY + all[i].maxY - minY) * scaleY);
+            keys[i] = ((spreadBits(cellX) | spreadBits(cellY) << 1) << 32 | i) ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(keys);
+        Node[] sorted = new Node[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = all[(int) keys[i]];
+        }
+        this.root = build(sorted, 0, n);
+        this.root.parent = null;
+        this.spare = null;
+    }
+
+    /**
+     * Spreads the low 16 bits of a number to the even bits of the result, for a Morton code.
+     *
+     * @param value the number, from 0 to MORTON_CELLS
+     * @return the spread bits
+     */
+    private static long spreadBits(int value) {
+        long v = Math.min(value, MORTON_CELLS - 1);
+        v = (v | v << 8) & 0x00FF00FFL;
+        v = (v | v << 4) & 0x0F0F0F0FL;
+        v = (v | v << 2) & 0x33333333L;
+        v = (v | v << 1) & 0x55555555L;
+        return v;
+    }
+
+    /**
+     * Builds a balanced subtree over a range of leaves, splitting it in halves.
+     *
+     * @param leaves the leaves, in Morton order
+     * @param from   the first leaf of the range
+     * @param to     the end of the range, exclusive
+     * @return the root of the subtree
+     */
+    private static Node build(Node[] leaves, int from, int to) {
+        if (to - from == 1) {
+            return leaves[from];
+        }
+        int middle = (from + to) >>> 1;
+        Node node = new Node();
+        node.left = build(leaves, from, middle);
+        node.right = build(leaves, middle, to);
+        node.left.parent = node;
+        node.right.parent = node;
+        node.refit();
+        return node;
+    }
+
+    /**
+     * Sets the box of a leaf to the collision rectangle of its collidable.
+     *
+     * @param leaf the leaf to fit
+     */
+    private static void fitLeaf(Node leaf) {
+        Rectangle rect = leaf.collidable.getCollisionRectangle();
+        leaf.minX = rect.getMinx() - MARGIN;
+        leaf.minY = rect.getMiny() - MARGIN;
+        leaf.maxX = rect.getRightX() + MARGIN;
+        leaf.maxY = rect.getBottomY() + MARGIN;
+    }
+
+    /**
+     * Inserts a leaf next to the sibling that grows the tree's total box perimeter the least.
+     *
+     * @param leaf the leaf to insert
+     */
+    private void insertLeaf(Node leaf) {
+        leaf.parent = null;
+        if (this.root == null) {
+            this.root = leaf;
+            return;
+        }
+
+        // Descend towards the cheapest sibling
+        Node sibling = this.root;
+        while (!sibling.isLeaf()) {
+            double perimeter = sibling.perimeter();
+            double combined = perimeterOfUnion(sibling, leaf);
+            double cost = 2 * combined;
+            double inheritance = 2 * (combined - perimeter);
+            double costLeft = childCost(sibling.left, leaf) + inheritance;
+            double costRight = childCost(sibling.right, leaf) + inheritance;
+            if (cost < costLeft && cost < costRight) {
+                break;
+            }
+            sibling = costLeft < costRight ? sibling.left : sibling.right;
+        }
+
+        Node oldParent = sibling.parent;
+        Node newParent = this.spare != null ? this.spare : new Node();
+        this.spare = null;
+        newParent.parent = oldParent;
+        newParent.left = sibling;
+        newParent.right = leaf;
+        sibling.parent = newParent;
+        leaf.parent = newParent;
+        if (oldParent == null) {
+            this.root = newParent;
+        } else if (oldParent.left == sibling) {
+            oldParent.left = newParent;
+        } else {
+            oldParent.right = newParent;
+        }
+        refitUpwards(newParent);
+    }
+
+    /**
+     * Returns the cost of descending into a child when inserting a leaf.
+     *
+     * @param child the child to descend into
+     * @param leaf  the leaf being inserted
+     * @return the perimeter the child's subtree would grow by
+     */
+    private static double childCost(Node child, Node leaf) {
+        if (child.isLeaf()) {
+            return perimeterOfUnion(child, leaf);
+        }
+        return perimeterOfUnion(child, leaf) - child.perimeter();
+    }
+
+    /**
+     * Removes a leaf from the tree, replacing its parent with its sibling.
+     *
+     * @param leaf the leaf to remove
+     */
+    private void removeLeaf(Node leaf) {
+        if (leaf == this.root) {
+            this.root = null;
+            return;
+        }
+        Node parent = leaf.parent;
+        Node grandParent = parent.parent;
+        Node sibling = parent.left == leaf ? parent.right : parent.left;
+        sibling.parent = grandParent;
+        if (grandParent == null) {
+            this.root = sibling;
+        } else {
+            if (grandParent.left == parent) {
+                grandParent.left = sibling;
+            } else {
+                grandParent.right = sibling;
+            }
+            refitUpwards(grandParent);
+        }
+        leaf.parent = null;
+        parent.parent = null;
+        parent.left = null;
+        parent.right = null;
+        this.spare = parent;
+    }
+
+    /**
+     * Walks from a node up to the root, rebalancing and refitting every ancestor's box.
+     *
+     * @param node the first node to refit
+     */
+    private void refitUpwards(Node node) {
+        while (node != null) {
+            node = balance(node);
+            node.refit();
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if the node's subtrees differ in height by more than one.
+     *
+     * @param a the node to balance
+     * @return the node that now stands in a's place
+     */
+    private Node balance(Node a) {
+        if (a.isLeaf()) {
+            return a;
+        }
+        Node b = a.left;
+        Node c = a.right;
+        int diff = c.height - b.height;
+        if (diff > 1) {
+            return rotate(a, c);
+        }
+        if (diff < -1) {
+            return rotate(a, b);
+        }
+        return a;
+    }
+
+    /**
+     * Promotes the taller child of a node to the node's place.
+     *
+     * @param a     the unbalanced node
+     * @param tall  the taller child of a
+     * @return the taller child, which has taken a's place
+     */
+    private Node rotate(Node a, Node tall) {
+        Node f = tall.left;
+        Node g = tall.right;
+
+        // Swap a and tall
+        tall.parent = a.parent;
+        a.parent = tall;
+        if (tall.parent == null) {
+            this.root = tall;
+        } else if (tall.parent.left == a) {
+            tall.parent.left = tall;
+        } else {
+            tall.parent.right = tall;
+        }
+        if (a.left == tall) {
+            tall.left = a;
+        } else {
+            tall.right = a;
+        }
+
+        // Keep the taller grandchild under tall and hand the shorter one to a
+        Node keep = f.height > g.height ? f : g;
+        Node give = keep == f ? g : f;
+        if (tall.left == a) {
+            tall.right = keep;
+        } else {
+            tall.left = keep;
+        }
+        if (a.left == tall) {
+            a.left = give;
+        } else {
+            a.right = give;
+        }
+        give.parent = a;
+        a.refit();
+        tall.refit();
+        return tall;
+    }
+
+    @Override
+    public CollisionInfo getClosestCollision(Line trajectory, double radius, QueryStats stats) {
+        ClosestHit hit = new ClosestHit(trajectory, radius, stats);
+        if (this.root == null) {
+            return hit.toCollisionInfo();
+        }
+        double x0 = trajectory.start().getX();
+        double y0 = trajectory.start().getY();
+        double dx = trajectory.end().getX() - x0;
+        double dy = trajectory.end().getY() - y0;
+        double length = trajectory.length();
+
+        Heap heap = this.heaps.get();
+        int size = 0;
+        double rootT = entryParameter(this.root, radius, x0, y0, dx, dy);
+        if (rootT >= 0) {
+            size = heap.push(size, this.root, rootT);
+        }
+        while (size > 0) {
+            Node node = heap.nodes[0];
+            double t = heap.keys[0];
+            size = heap.pop(size);
+            hit.visit();
+            // Every node left in the heap is entered further away than this one
+            if ((t - hit.minT()) * length > MARGIN) {
+                break;
+            }
+            if (node.isLeaf()) {
+                hit.offer(node.collidable, node.order);
+                continue;
+            }
+            double leftT = entryParameter(node.left, radius, x0, y0, dx, dy);
+            if (leftT >= 0) {
+                size = heap.push(size, node.left, leftT);
+            }
+            double rightT = entryParameter(node.right, radius, x0, y0, dx, dy);
+            if (rightT >= 0) {
+                size = heap.push(size, node.right, rightT);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            heap.nodes[i] = null;
+        }
+        return hit.toCollisionInfo();
+    }
+
+    /**
+     * Returns the parameter at which a segment enters a node's box grown by a radius (slab method).
+     *
+     * @param node   the node whose box is tested
+     * @param radius the amount to grow the box by on every side
+     * @param x0     the x-coordinate of the segment start
+     * @param y0     the y-coordinate of the segment start
+     * @param dx     the x extent of the segment
+     * @param dy     the y extent of the segment
+     * @return the entry parameter in [0, 1], 0 if the segment starts inside the box, or -1 on a miss
+     */
+    private static double entryParameter(Node node, double radius, double x0, double y0, double dx, double dy) {
+        double tMin = 0;
+        double tMax = 1;
+        if (dx == 0) {
+            if (x0 < node.minX - radius || x0 > node.maxX + radius) {
+                return -1;
+            }
+        } else {
+            double t1 = (node.minX - radius - x0) / dx;
+            double t2 = (node.maxX + radius - x0) / dx;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        if (dy == 0) {
+            if (y0 < node.minY - radius || y0 > node.maxY + radius) {
+                return -1;
+            }
+        } else {
+            double t1 = (node.minY - radius - y0) / dy;
+            double t2 = (node.maxY + radius - y0) / dy;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        }
+        return tMin <= tMax ? tMin : -1;
+    }
+
+    /**
+     * Returns the perimeter of the box enclosing two nodes.
+     *
+     * @param a the first node
+     * @param b the second node
+     * @return the perimeter of the union of both boxes
+     */
+    private static double perimeterOfUnion(Node a, Node b) {
+        double width = Math.max(a.maxX, b.maxX) - Math.min(a.minX, b.minX);
+        double height = Math.max(a.maxY, b.maxY) - Math.min(a.minY, b.minY);
+        return 2 * (width + height);
+    }
+
+    /**
+     * A node of the tree. Leaves hold a collidable, inner nodes always have two children.
+     */
+    private static final class Node {
+        private double minX;
+        private double minY;
+        private double maxX;
+        private double maxY;
+        private Node parent;
+        private Node left;
+        private Node right;
+        private int height;
+        private Collidable collidable;
+        private long order;
+
+        /**
+         * Checks if this node is a leaf.
+         *
+         * @return true if the node holds a collidable, false otherwise
+         */
+        private boolean isLeaf() {
+            return this.left == null;
+        }
+
+        /**
+         * Returns the perimeter of this node's box.
+         *
+         * @return the perimeter of the box
+         */
+        private double perimeter() {
+            return 2 * (this.maxX - this.minX + this.maxY - this.minY);
+        }
+
+        /**
+         * Recomputes the box and height of an inner node from its children.
+         */
+        private void refit() {
+            if (isLeaf()) {
+                return;
+            }
+            this.minX = Math.min(this.left.minX, this.right.minX);
+            this.minY = Math.min(this.left.minY, this.right.minY);
+            this.maxX = Math.max(this.left.maxX, this.right.maxX);
+            this.maxY = Math.max(this.left.maxY, this.right.maxY);
+            this.height = 1 + Math.max(this.left.height, this.right.height);
+        }
+    }
+
+    /**
+     * A binary min-heap of nodes keyed by the parameter at which the trajectory enters them.
+     */
+    private static final class Heap {
+        private Node[] nodes = new Node[64];
+        private double[] keys = new double[64];
+
+        /**
+         * Pushes a node onto the query's binary min-heap.
+         *
+         * @param size the current heap size
+         * @param node the node to push
+         * @param t    the parameter at which the trajectory enters the node
+         * @return the new heap size
+         */
+        private int push(int size, Node node, double t) {
+            if (size == this.nodes.length) {
+                this.nodes = Arrays.copyOf(this.nodes, size * 2);
+                this.keys = Arrays.copyOf(this.keys, size * 2);
+            }
+            int i = size;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (this.keys[parent] <= t) {
+                    break;
+                }
+                this.nodes[i] = this.nodes[parent];
+                this.keys[i] = this.keys[parent];
+                i = parent;
+            }
+            this.nodes[i] = node;
+            this.keys[i] = t;
+            return size + 1;
+        }
+
+        /**
+         * Removes the nearest node from the query's binary min-heap.
+         *
+         * @param size the current heap size
+         * @return the new heap size
+         */
+        private int pop(int size) {
+            size--;
+            Node last = this.nodes[size];
+            double lastKey = this.keys[size];
+            this.nodes[size] = null;
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && this.keys[child + 1] < this.keys[child]) {
+                    child++;
+                }
+                if (this.keys[child] >= lastKey) {
+                    break;
+                }
+                this.nodes[i] = this.nodes[child];
+                this.keys[i] = this.keys[child];
+                i = child;
+            }
+            if (size > 0) {
+                this.nodes[i] = last;
+                this.keys[i] = lastKey;
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package Gameps;
+
+import sprites.Ball;
+import sprites.Block;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * AsyncHitListener hands hit events to a slow listener, such as one that saves the score,
+ * on a thread of its own, so the listener never holds up a game step. Events wait in a
+ * bounded queue and reach the listener in the order they happened. When the queue is full,
+ * the game thread waits for room in it instead of dropping events or letting them pile up.
+ * The wrapped listener runs on another thread, so it must not change the game; it should only
+ * read what does not change, such as the color of the block, or keep state of its own.
+ */
+public class AsyncHitListener implements HitListener {
+    private final HitListener listener;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Constructs an AsyncHitListener.
+     *
+     * @param listener the listener to notify on the other thread
+     * @param capacity the number of events that may wait for the listener
+     */
+    public AsyncHitListener(HitListener listener, int capacity) {
+        this.listener = listener;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), runnable -> {
+                    Thread thread = new Thread(runnable, "arkanoid-hit-listener");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, pool) -> {
+                    // The queue is full: wait for room rather than drop the event
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("the listener was closed");
+                    }
+                    try {
+                        pool.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("interrupted while waiting for the listener", e);
+                    }
+                });
+    }
+
+    @Override
+    public void hitEvent(Block beingHit, Ball hitter) {
+        this.executor.execute(() -> this.listener.hitEvent(beingHit, hitter));
+    }
+
+    /**
+     * Returns the number of events waiting for the listener.
+     *
+     * @return the number of waiting events
+     */
+    public int backlog() {
+        BlockingQueue<Runnable> queue = this.executor.getQueue();
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting events and waits for the listener to handle the ones already queued.
+     *
+     * @param timeoutMillis the longest time to wait
+     * @return true if every queued event was handled, false if the time ran out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean close(long timeoutMillis) throws InterruptedException {
+        this.executor.shutdown();
+        return this.executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -27,13 +27,17 @@ public class BallRemover implements HitListener {
     /**
      * This method is called whenever the beingHit object is hit.
      * It removes the hitter ball from the game and decreases the count
-     * of remaining balls by 1.
+     * of remaining balls by 1. A ball that was already removed is not counted again, which
+     * can happen when hits are batched and the ball hits twice in one step.
      *
      * @param beingHit the block that is being hit
      * @param hitter the ball that hits the block
      */
     @Override
     public void hitEvent(Block beingHit, Ball hitter) {
+        if (!game.containsSprite(hitter)) {
+            return;
+        }
         hitter.removeFromGame(game);
         remainingBalls.decrease(1);
     }
@@ -27,12 +27,15 @@ public class BlockRemover implements HitListener {
     /**
      * This method is called whenever the beingHit object is hit.
      * It removes the beingHit block from the game and removes this listener
-     * from the block being removed.
+     * from the block being removed. A block that was already removed is not counted again.
      *
      * @param beingHit the block that is being hit
      * @param hitter the ball that hits the block
      */
     public void hitEvent(Block beingHit, Ball hitter) {
+        if (!this.game.containsSprite(beingHit)) {
+            return;
+        }
         beingHit.removeFromGame(this.game);
         beingHit.removeHitListener(this);
         this.remainingBlocks.increase(1);
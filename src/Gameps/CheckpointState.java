@@ -0,0 +1,243 @@
+package Gameps;
+
+import Geometry.Point;
+import sprites.Ball;
+import sprites.Sprite;
+import sprites.SpriteCollection;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * CheckpointState encodes the state of a game into the snapshots of a Gameps.CheckpointStore,
+ * restores it from them, and replays the records of the store's journal.
+ * A snapshot holds the counters, the position of the paddle, a bit per indexed block telling
+ * whether it is alive, and every sprite in the order they take their steps in. The order is
+ * saved since it decides which ball reaches a block first, and where a sprite moves when
+ * another is removed. A level starts out as one stretch of blocks with consecutive indexes,
+ * and every removal breaks it up a little, so the blocks in the order are saved as runs of
+ * consecutive indexes: a run costs 8 bytes, whatever its length. A ball costs its center,
+ * velocity, radius and color, and any other sprite a 4-byte token. A snapshot so grows with the
+ * balls and the blocks removed, and only by a bit for every block of the level.
+ */
+final class CheckpointState {
+    // How a snapshot marks the sprites that are not indexed blocks, whose runs start with the
+    // index of their first block
+    private static final int BALL_SPRITE = -1;
+    private static final int PADDLE_SPRITE = -2;
+    private static final int OTHER_SPRITE = -3;
+    // The counters, the position of the paddle, and the number of blocks and bitmap words
+    private static final int HEADER = 4 * 4 + 2 * 8 + 2 * 4;
+    // The center, velocity, radius and color of a ball
+    private static final int BALL_STATE = 4 * 8 + 2 * 4;
+
+    /**
+     * No instances, only the format.
+     */
+    private CheckpointState() {
+    }
+
+    /**
+     * Returns an upper bound on the size of a snapshot of a game in bytes, for a buffer to write
+     * the snapshot into. The snapshot itself is usually far smaller.
+     *
+     * @param game the game
+     * @return the largest size a snapshot of the game can have
+     */
+    static int maxSize(Game game) {
+        SpriteCollection sprites = game.getSprites();
+        return HEADER + game.getLiveWords() * 8 + 4 + sprites.size() * 2 * 4
+                + sprites.getPopulation().count(ObjectType.BALL) * BALL_STATE;
+    }
+
+    /**
+     * Writes a snapshot of a game, in a single pass over its sprites.
+     *
+     * @param game the game, whose arena is initialized
+     * @param out  the buffer to write to, with room for maxSize() bytes
+     */
+    static void write(Game game, ByteBuffer out) {
+        if (game.getPaddle() == null) {
+            throw new IllegalStateException("the arena must be initialized before saving the game");
+        }
+        out.putInt(game.getScoreCounter().getValue());
+        out.putInt(game.getBallCounter().getValue());
+        out.putInt(game.getRemovedBlockCounter().getValue());
+        out.putInt(game.getLevelBlockCounter().getValue());
+        out.putDouble(game.getPaddle().getCollisionRectangle().getMinx());
+        out.putDouble(game.getPaddle().getCollisionRectangle().getMiny());
+        out.putInt(game.getIndexedBlockCount());
+        out.putInt(game.getLiveWords());
+        for (int w = 0; w < game.getLiveWords(); w++) {
+            out.putLong(game.getLiveWord(w));
+        }
+        SpriteCollection sprites = game.getSprites();
+        // The number of entries, and the length of the open run, go in once they are known
+        int countAt = out.position();
+        out.putInt(0);
+        int count = 0;
+        int runLengthAt = -1;
+        int run = 0;
+        int next = -1;
+        for (int i = 0; i < sprites.size(); i++) {
+            Sprite s = sprites.getSprite(i);
+            int index = game.indexOf(s);
+            if (index >= 0 && index == next) {
+                run++;
+                next++;
+                continue;
+            }
+            if (runLengthAt >= 0) {
+                out.putInt(runLengthAt, run);
+                runLengthAt = -1;
+            }
+            count++;
+            next = -1;
+            if (index >= 0) {
+                out.putInt(index);
+                runLengthAt = out.position();
+                out.putInt(0);
+                run = 1;
+                next = index + 1;
+            } else if (s == game.getPaddle()) {
+                out.putInt(PADDLE_SPRITE);
+            } else if (s instanceof Ball) {
+                Ball ball = (Ball) s;
+                out.putInt(BALL_SPRITE);
+                out.putDouble(ball.getCenter().getX());
+                out.putDouble(ball.getCenter().getY());
+                out.putDouble(ball.getVelocity().getDx());
+                out.putDouble(ball.getVelocity().getDy());
+                out.putInt(ball.getSize());
+                out.putInt(ball.getColor().getRGB());
+            } else {
+                out.putInt(OTHER_SPRITE);
+            }
+        }
+        if (runLengthAt >= 0) {
+            out.putInt(runLengthAt, run);
+        }
+        out.putInt(countAt, count);
+    }
+
+    /**
+     * Restores a game from a snapshot written by write(). The indexed blocks the snapshot has
+     * lost are removed, the balls are replaced by the saved ones, and the sprites are put back
+     * in their saved order, so the game goes on exactly like the saved one would.
+     * Sprites other than the balls, the paddle and the indexed blocks, such as the walls, never
+     * move, so any of them stands in for any other.
+     *
+     * @param game the game, freshly built with the same level and with its arena initialized
+     * @param in   the snapshot
+     * @throws IOException if the snapshot does not match the level of the game
+     */
+    static void read(Game game, ByteBuffer in) throws IOException {
+        if (game.getPaddle() == null) {
+            throw new IllegalStateException("the arena must be initialized before restoring the game");
+        }
+        int savedScore = in.getInt();
+        int savedBalls = in.getInt();
+        int savedRemoved = in.getInt();
+        int savedBlocks = in.getInt();
+        double paddleX = in.getDouble();
+        double paddleY = in.getDouble();
+        int blockCount = in.getInt();
+        int words = in.getInt();
+        if (blockCount != game.getIndexedBlockCount() || words != game.getLiveWords()) {
+            throw new IOException("the snapshot is of a different level");
+        }
+        long[] live = new long[words];
+        for (int w = 0; w < words; w++) {
+            live[w] = in.getLong();
+            if ((live[w] & ~game.getLiveWord(w)) != 0) {
+                throw new IOException("the snapshot has blocks this game has already lost");
+            }
+        }
+        for (int w = 0; w < words; w++) {
+            long lost = game.getLiveWord(w) & ~live[w];
+            while (lost != 0) {
+                int bit = Long.numberOfTrailingZeros(lost);
+                lost &= lost - 1;
+                game.getIndexedBlock(w * 64 + bit).removeFromGame(game);
+            }
+        }
+        // The sprites that are neither balls, nor the paddle, nor indexed blocks, in their order
+        SpriteCollection sprites = game.getSprites();
+        List<Sprite> others = new ArrayList<>();
+        for (int i = sprites.size() - 1; i >= 0; i--) {
+            Sprite s = sprites.getSprite(i);
+            if (s instanceof Ball) {
+                game.removeSprite(s);
+            } else if (s != game.getPaddle() && game.indexOf(s) < 0) {
+                others.add(s);
+            }
+        }
+        Collections.reverse(others);
+
+        int count = in.getInt();
+        List<Sprite> order = new ArrayList<>(sprites.size());
+        int nextOther = 0;
+        for (int i = 0; i < count; i++) {
+            int token = in.getInt();
+            if (token >= 0) {
+                int run = in.getInt();
+                if (run <= 0 || run > blockCount - token) {
+                    throw new IOException("the snapshot has more blocks than the level");
+                }
+                for (int k = token; k < token + run; k++) {
+                    order.add(game.getIndexedBlock(k));
+                }
+            } else if (token == PADDLE_SPRITE) {
+                order.add(game.getPaddle());
+            } else if (token == BALL_SPRITE) {
+                Point center = new Point(in.getDouble(), in.getDouble());
+                Velocity velocity = new Velocity(in.getDouble(), in.getDouble());
+                int radius = in.getInt();
+                order.add(game.addBall(center, radius, new Color(in.getInt(), true), velocity));
+            } else if (nextOther < others.size()) {
+                order.add(others.get(nextOther++));
+            } else {
+                throw new IOException("the snapshot has more sprites than the level");
+            }
+        }
+        if (!sprites.reorder(order)) {
+            throw new IOException("the sprites of the snapshot do not match the level");
+        }
+        game.getPaddle().setPosition(paddleX, paddleY);
+        game.getScoreCounter().setValue(savedScore);
+        game.getBallCounter().setValue(savedBalls);
+        game.getRemovedBlockCounter().setValue(savedRemoved);
+        game.getLevelBlockCounter().setValue(savedBlocks);
+    }
+
+    /**
+     * Replays the removal of a level block from the journal.
+     *
+     * @param game       the game
+     * @param blockIndex the index of the block
+     */
+    static void restoreBlockRemoval(Game game, int blockIndex) {
+        if (blockIndex < 0 || blockIndex >= game.getIndexedBlockCount()
+                || (game.getLiveWord(blockIndex >>> 6) & (1L << blockIndex)) == 0) {
+            return;
+        }
+        game.getIndexedBlock(blockIndex).removeFromGame(game);
+        game.getRemovedBlockCounter().increase(1);
+    }
+
+    /**
+     * Replays a change of the score from the journal.
+     *
+     * @param game  the game
+     * @param value the new score
+     */
+    static void restoreScore(Game game, int value) {
+        game.getScoreCounter().setValue(value);
+    }
+}
@@ -0,0 +1,337 @@
+package Gameps;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * CheckpointStore keeps the checkpoints of a single game in two memory-mapped files: full
+ * snapshots of the game, and a journal of what changed since the last snapshot.
+ * The snapshot file has two slots, and every snapshot goes into the one not holding the latest,
+ * so a crash while saving never loses the snapshot before it. A snapshot too large for the slots
+ * is written into the second slot of a larger layout, past the end of the current one, and the
+ * file header only switches to the larger layout once it is whole, so growing is as safe.
+ * A snapshot is encoded into a buffer on the heap, see Gameps.CheckpointState, and then copied
+ * into its slot in one bulk copy, with no system call.
+ * The journal holds the level blocks removed and the score changes since the last snapshot,
+ * as fixed records of a type byte and an int, followed by a zero byte that marks its end. It
+ * belongs to the snapshot whose sequence number it starts with, and is started over with every
+ * snapshot.
+ * Nothing is forced to disk by the game thread, since a process that dies leaves its mapped
+ * pages to the operating system anyway. To survive the whole machine going down, call force()
+ * every now and then, from any thread.
+ */
+public class CheckpointStore implements AutoCloseable {
+    private static final int MAGIC = 0x41524B53;
+    private static final int JOURNAL_MAGIC = 0x41524B4A;
+    private static final int VERSION = 2;
+    // Magic, version and slot capacity
+    private static final int FILE_HEADER = 12;
+    // Sequence number, length and CRC of the payload
+    private static final int SLOT_HEADER = 16;
+    private static final int MIN_CAPACITY = 4096;
+    // Magic and sequence number of the snapshot the journal follows
+    private static final int JOURNAL_HEADER = 12;
+    private static final int RECORD = 5;
+    private static final int JOURNAL_CHUNK = 64 * 1024;
+    static final byte BLOCK_REMOVED = 1;
+    static final byte SCORE = 2;
+
+    private final FileChannel snapshotChannel;
+    private final FileChannel journalChannel;
+    private MappedByteBuffer snapshots;
+    private MappedByteBuffer journal;
+    private int capacity;
+    private ByteBuffer encoded;
+    private long sequence;
+    private int slot;
+    private int journalEnd;
+
+    /**
+     * Opens the checkpoints of a game, creating the files if they do not exist yet.
+     *
+     * @param snapshotFile the file of the snapshots
+     * @param journalFile  the file of the journal
+     * @throws IOException if a file cannot be opened, or is not a checkpoint file
+     */
+    public CheckpointStore(Path snapshotFile, Path journalFile) throws IOException {
+        this.snapshotChannel = FileChannel.open(snapshotFile, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.journalChannel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.encoded = ByteBuffer.allocate(MIN_CAPACITY);
+        if (this.snapshotChannel.size() >= FILE_HEADER) {
+            this.snapshots = this.snapshotChannel.map(FileChannel.MapMode.READ_WRITE, 0, this.snapshotChannel.size());
+            if (this.snapshots.getInt(0) != MAGIC || this.snapshots.getInt(4) != VERSION) {
+                throw new IOException("not a checkpoint file: " + snapshotFile);
+            }
+            this.capacity = this.snapshots.getInt(8);
+            if (this.snapshotChannel.size() < slotOffset(2)) {
+                throw new IOException("truncated checkpoint file: " + snapshotFile);
+            }
+            // Continue after the latest snapshot, so the next one never overwrites it
+            int latest = latestSlot();
+            if (latest >= 0) {
+                this.slot = latest;
+                this.sequence = this.snapshots.getLong(slotOffset(latest));
+            }
+        } else {
+            mapSnapshots(MIN_CAPACITY);
+        }
+        this.journal = this.journalChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(this.journalChannel.size(), JOURNAL_CHUNK));
+        this.journalEnd = findJournalEnd();
+        if (this.journal.getLong(4) != this.sequence) {
+            // The journal follows an older snapshot, so the latest one already holds all of it
+            resetJournal();
+        }
+    }
+
+    /**
+     * Saves a full snapshot of a game, and starts the journal over. The game must not be in
+     * the middle of a step.
+     *
+     * @param game the game to save
+     */
+    public void save(Game game) {
+        int maxSize = CheckpointState.maxSize(game);
+        if (this.encoded.capacity() < maxSize) {
+            this.encoded = ByteBuffer.allocate(Math.max(maxSize, this.encoded.capacity() * 2));
+        }
+        this.encoded.clear();
+        CheckpointState.write(game, this.encoded);
+        this.encoded.flip();
+        int size = this.encoded.limit();
+        CRC32 crc = new CRC32();
+        crc.update(this.encoded.array(), 0, this.encoded.limit());
+        int slotCapacity = this.capacity;
+        if (size > this.capacity) {
+            // The second slot of the larger layout starts past the end of the current one, so
+            // both current slots stay whole until the header switches layouts
+            slotCapacity = Math.max(size, this.capacity * 2 + SLOT_HEADER);
+            try {
+                this.snapshots = this.snapshotChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        slotOffset(2, slotCapacity));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        this.sequence++;
+        this.slot = slotCapacity != this.capacity ? 1 : 1 - this.slot;
+        int offset = slotOffset(this.slot, slotCapacity);
+        this.snapshots.position(offset + SLOT_HEADER);
+        this.snapshots.put(this.encoded);
+        this.snapshots.putInt(offset + 8, size);
+        this.snapshots.putInt(offset + 12, (int) crc.getValue());
+        // The sequence number goes last, so a slot is only ever taken as the latest once whole
+        this.snapshots.putLong(offset, this.sequence);
+        if (slotCapacity != this.capacity) {
+            // The first slot of the larger layout starts where the current first slot does, so it
+            // still holds what it held: an older whole snapshot, or nothing
+            this.snapshots.putInt(8, slotCapacity);
+            this.capacity = slotCapacity;
+        }
+        resetJournal();
+    }
+
+    /**
+     * Restores a game from the latest snapshot, then replays the journal that follows it.
+     * The game must be freshly built with the same level as the saved one, and not running.
+     *
+     * @param game the game to restore
+     * @return true if a snapshot was restored, false if nothing was ever saved
+     * @throws IOException if the snapshot is corrupt or does not match the level of the game
+     */
+    public boolean restore(Game game) throws IOException {
+        int latest = latestSlot();
+        if (latest < 0) {
+            return false;
+        }
+        int offset = slotOffset(latest);
+        ByteBuffer payload = this.snapshots.duplicate();
+        payload.position(offset + SLOT_HEADER);
+        payload.limit(offset + SLOT_HEADER + this.snapshots.getInt(offset + 8));
+        CheckpointState.read(game, payload.slice());
+
+        long owner = this.snapshots.getLong(offset);
+        if (this.journal.getInt(0) == JOURNAL_MAGIC && this.journal.getLong(4) == owner) {
+            // Read up to the end as it is now, whatever the restore itself may add
+            int end = this.journalEnd;
+            for (int at = JOURNAL_HEADER; at < end; at += RECORD) {
+                byte type = this.journal.get(at);
+                int value = this.journal.getInt(at + 1);
+                if (type == BLOCK_REMOVED) {
+                    CheckpointState.restoreBlockRemoval(game, value);
+                } else if (type == SCORE) {
+                    CheckpointState.restoreScore(game, value);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends the removal of a level block to the journal.
+     *
+     * @param blockIndex the index of the block in the level
+     */
+    void blockRemoved(int blockIndex) {
+        append(BLOCK_REMOVED, blockIndex);
+    }
+
+    /**
+     * Appends a change of the score to the journal.
+     *
+     * @param score the new score
+     */
+    void scoreChanged(int score) {
+        append(SCORE, score);
+    }
+
+    /**
+     * Appends a record to the journal, followed by the zero byte that marks its end. Records
+     * before the first snapshot belong to no snapshot, so they are not kept.
+     *
+     * @param type  the type of the record
+     * @param value the value of the record
+     */
+    private void append(byte type, int value) {
+        if (this.sequence == 0) {
+            return;
+        }
+        if (this.journalEnd + RECORD + 1 > this.journal.capacity()) {
+            try {
+                this.journal = this.journalChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        this.journal.capacity() + JOURNAL_CHUNK);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        this.journal.put(this.journalEnd + RECORD, (byte) 0);
+        this.journal.putInt(this.journalEnd + 1, value);
+        this.journal.put(this.journalEnd, type);
+        this.journalEnd += RECORD;
+    }
+
+    /**
+     * Returns the sequence number of the latest snapshot.
+     *
+     * @return the sequence number, or 0 if nothing was saved yet
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Forces the snapshots and the journal to disk. This may take a while, so call it from a
+     * thread other than the game's.
+     */
+    public void force() {
+        this.snapshots.force();
+        this.journal.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.snapshotChannel.close();
+        this.journalChannel.close();
+    }
+
+    /**
+     * Maps a new snapshot file with slots of the given capacity and writes its header.
+     *
+     * @param slotCapacity the largest payload a slot can hold
+     * @throws IOException if the file cannot be mapped
+     */
+    private void mapSnapshots(int slotCapacity) throws IOException {
+        this.capacity = slotCapacity;
+        this.snapshots = this.snapshotChannel.map(FileChannel.MapMode.READ_WRITE, 0, slotOffset(2));
+        // Neither slot holds a snapshot yet
+        this.snapshots.putLong(slotOffset(0), 0);
+        this.snapshots.putLong(slotOffset(1), 0);
+        this.snapshots.putInt(0, MAGIC);
+        this.snapshots.putInt(4, VERSION);
+        this.snapshots.putInt(8, slotCapacity);
+    }
+
+    /**
+     * Returns the offset of a slot in the snapshot file.
+     *
+     * @param index the index of the slot, or 2 for the end of the file
+     * @return the offset
+     */
+    private int slotOffset(int index) {
+        return slotOffset(index, this.capacity);
+    }
+
+    /**
+     * Returns the offset of a slot in a snapshot file with slots of the given capacity.
+     *
+     * @param index        the index of the slot, or 2 for the end of the file
+     * @param slotCapacity the largest payload a slot can hold
+     * @return the offset
+     */
+    private static int slotOffset(int index, int slotCapacity) {
+        return FILE_HEADER + index * (SLOT_HEADER + slotCapacity);
+    }
+
+    /**
+     * Finds the slot holding the latest whole snapshot.
+     *
+     * @return the index of the slot, or -1 if neither holds a whole snapshot
+     */
+    private int latestSlot() {
+        int latest = -1;
+        long best = 0;
+        for (int i = 0; i < 2; i++) {
+            int offset = slotOffset(i);
+            long seq = this.snapshots.getLong(offset);
+            int length = this.snapshots.getInt(offset + 8);
+            if (seq <= best || length < 0 || length > this.capacity) {
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            this.snapshots.get(offset + SLOT_HEADER, bytes);
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            if ((int) crc.getValue() == this.snapshots.getInt(offset + 12)) {
+                latest = i;
+                best = seq;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Starts the journal over, following the latest snapshot.
+     */
+    private void resetJournal() {
+        this.journal.put(JOURNAL_HEADER, (byte) 0);
+        this.journal.putInt(0, JOURNAL_MAGIC);
+        this.journal.putLong(4, this.sequence);
+        this.journalEnd = JOURNAL_HEADER;
+    }
+
+    /**
+     * Finds the end of the journal, where the next record goes.
+     *
+     * @return the offset of the end of the journal
+     */
+    private int findJournalEnd() {
+        if (this.journal.getInt(0) != JOURNAL_MAGIC) {
+            return JOURNAL_HEADER;
+        }
+        int at = JOURNAL_HEADER;
+        while (at + RECORD <= this.journal.capacity() && this.journal.get(at) != 0) {
+            at += RECORD;
+        }
+        return at;
+    }
+}
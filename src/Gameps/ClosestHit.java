@@ -0,0 +1,121 @@
+package Gameps;
+
+import Geometry.Line;
+import Geometry.RayHit;
+import Geometry.Rectangle;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * ClosestHit keeps track of the closest collision found so far during a single
+ * closest-collision query, for a point or for a circle moving along the trajectory. Hits are
+ * compared by their parameter along the trajectory, and ties are broken by insertion order,
+ * so the result does not depend on the order in which an index visits its collidables. The
+ * collision point is only built once, for the winning hit.
+ */
+final class ClosestHit {
+    private final double x0;
+    private final double y0;
+    private final double dx;
+    private final double dy;
+    private final double radius;
+    private final RayHit rayHit = new RayHit();
+    private double minT = Double.POSITIVE_INFINITY;
+    private long minOrder = Long.MAX_VALUE;
+    private int closestEdge = Rectangle.NO_EDGE;
+    private Collidable closestCollidable;
+    private final QueryStats stats;
+    private int tested;
+    private int visited;
+
+    /**
+     * Constructs a ClosestHit for a point moving along the given trajectory.
+     *
+     * @param trajectory the trajectory of the query
+     */
+    ClosestHit(Line trajectory) {
+        this(trajectory, 0);
+    }
+
+    /**
+     * Constructs a ClosestHit for a circle whose center moves along the given trajectory.
+     *
+     * @param trajectory the trajectory of the circle's center
+     * @param radius     the radius of the circle, or 0 for a point
+     */
+    ClosestHit(Line trajectory, double radius) {
+        this(trajectory, radius, null);
+    }
+
+    /**
+     * Constructs a ClosestHit for a circle that also reports how much work the query did.
+     *
+     * @param trajectory the trajectory of the circle's center
+     * @param radius     the radius of the circle, or 0 for a point
+     * @param stats      where to report the work of the query, or null
+     */
+    ClosestHit(Line trajectory, double radius, QueryStats stats) {
+        this.stats = stats;
+        this.x0 = trajectory.start().getX();
+        this.y0 = trajectory.start().getY();
+        this.dx = trajectory.end().getX() - this.x0;
+        this.dy = trajectory.end().getY() - this.y0;
+        this.radius = radius;
+    }
+
+    /**
+     * Tests a collidable against the trajectory and keeps it if it is the closest so far.
+     *
+     * @param collidable the collidable to test
+     * @param order      the insertion order of the collidable
+     */
+    void offer(Collidable collidable, long order) {
+        this.tested++;
+        Rectangle rect = collidable.getCollisionRectangle();
+        double t;
+        if (this.radius > 0) {
+            t = rect.sweptCircleIntersection(this.x0, this.y0, this.dx, this.dy, this.radius, this.rayHit);
+        } else {
+            t = rect.slabIntersection(this.x0, this.y0, this.dx, this.dy, this.rayHit);
+        }
+        if (t >= 0 && (t < this.minT || (t == this.minT && order < this.minOrder))) {
+            this.minT = t;
+            this.minOrder = order;
+            this.closestEdge = this.rayHit.getEdge();
+            this.closestCollidable = collidable;
+        }
+    }
+
+    /**
+     * Returns the parameter along the trajectory of the closest hit found so far.
+     *
+     * @return the parameter of the closest hit, or positive infinity if there is none
+     */
+    double minT() {
+        return this.minT;
+    }
+
+    /**
+     * Counts a grid cell or tree node the index visited during the query.
+     */
+    void visit() {
+        this.visited++;
+    }
+
+    /**
+     * Returns the closest collision found, and reports the work of the query.
+     *
+     * @return the closest collision information, or null if no collision occurred
+     */
+    CollisionInfo toCollisionInfo() {
+        if (this.stats != null) {
+            this.stats.add(this.tested, this.visited);
+        }
+        if (this.closestCollidable != null) {
+            return new CollisionInfo(this.closestCollidable.getCollisionRectangle().pointOnEdge(
+                    this.x0, this.y0, this.dx, this.dy, this.minT, this.closestEdge), this.closestCollidable,
+                    this.minT);
+        }
+        return null; // No collision occurred
+    }
+}
@@ -0,0 +1,139 @@
+package Gameps;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * CollisionCounters are always-on counters of the work of the collision engine: queries,
+ * collidables tested, grid cells or tree nodes visited, hits and steps. They are LongAdders,
+ * so counting is cheap even when queries run on several threads at once.
+ */
+public class CollisionCounters {
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder collidablesTested = new LongAdder();
+    private final LongAdder nodesVisited = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder ticks = new LongAdder();
+
+    /**
+     * Counts a query and its work.
+     *
+     * @param stats the work of the query
+     */
+    public void recordQuery(QueryStats stats) {
+        this.queries.increment();
+        this.collidablesTested.add(stats.getCollidablesTested());
+        this.nodesVisited.add(stats.getNodesVisited());
+    }
+
+    /**
+     * Counts a hit.
+     */
+    public void recordHit() {
+        this.hits.increment();
+    }
+
+    /**
+     * Counts a simulation step.
+     */
+    public void recordTick() {
+        this.ticks.increment();
+    }
+
+    /**
+     * Returns the number of queries so far.
+     *
+     * @return the number of queries
+     */
+    public long getQueries() {
+        return this.queries.sum();
+    }
+
+    /**
+     * Returns the number of collidables tested so far.
+     *
+     * @return the number of collidables tested
+     */
+    public long getCollidablesTested() {
+        return this.collidablesTested.sum();
+    }
+
+    /**
+     * Returns the number of grid cells or tree nodes visited so far.
+     *
+     * @return the number of cells or nodes visited
+     */
+    public long getNodesVisited() {
+        return this.nodesVisited.sum();
+    }
+
+    /**
+     * Returns the number of hits so far.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Returns the number of simulation steps so far.
+     *
+     * @return the number of steps
+     */
+    public long getTicks() {
+        return this.ticks.sum();
+    }
+
+    /**
+     * Returns the average number of queries per step.
+     *
+     * @return the queries per step, or 0 before the first step
+     */
+    public double queriesPerTick() {
+        long count = getTicks();
+        return count == 0 ? 0 : (double) getQueries() / count;
+    }
+
+    /**
+     * Returns the average number of collidables tested per query.
+     *
+     * @return the collidables tested per query, or 0 before the first query
+     */
+    public double collidablesPerQuery() {
+        long count = getQueries();
+        return count == 0 ? 0 : (double) getCollidablesTested() / count;
+    }
+
+    /**
+     * Returns the average number of grid cells or tree nodes visited per query.
+     *
+     * @return the cells or nodes visited per query, or 0 before the first query
+     */
+    public double nodesPerQuery() {
+        long count = getQueries();
+        return count == 0 ? 0 : (double) getNodesVisited() / count;
+    }
+
+    /**
+     * Returns the average number of hits per step.
+     *
+     * @return the hits per step, or 0 before the first step
+     */
+    public double hitsPerTick() {
+        long count = getTicks();
+        return count == 0 ? 0 : (double) getHits() / count;
+    }
+
+    /**
+     * Sets every counter back to zero.
+     */
+    public void reset() {
+        this.queries.reset();
+        this.collidablesTested.reset();
+        this.nodesVisited.reset();
+        this.hits.reset();
+        this.ticks.reset();
+    }
+}
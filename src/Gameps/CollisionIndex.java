@@ -0,0 +1,83 @@
+package Gameps;
+
+import Geometry.Line;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * The CollisionIndex interface represents a spatial structure that stores the collidables
+ * of a Gameps.GameEnvironment and answers closest-collision queries against them.
+ * Every implementation must return exactly the same answer as a linear scan over the
+ * collidables in the order they were added.
+ */
+public interface CollisionIndex {
+
+    /**
+     * Adds a collidable object to the index.
+     *
+     * @param c     the collidable object to add
+     * @param order the insertion order of the object, used to break ties between equally close hits
+     */
+    void add(Collidable c, long order);
+
+    /**
+     * Adds many collidable objects to the index at once, such as the blocks of a level being
+     * loaded. The result is the same as adding them one by one, but an index may build its
+     * structure for the whole batch in a single pass.
+     *
+     * @param collidables the collidable objects to add
+     * @param count       the number of objects to add, from the start of the array
+     * @param firstOrder  the insertion order of the first object, the others following it
+     */
+    default void addAll(Collidable[] collidables, int count, long firstOrder) {
+        for (int i = 0; i < count; i++) {
+            add(collidables[i], firstOrder + i);
+        }
+    }
+
+    /**
+     * Removes a collidable object from the index.
+     *
+     * @param c the collidable object to remove
+     */
+    void remove(Collidable c);
+
+    /**
+     * Updates the position of a collidable object whose collision rectangle has changed.
+     *
+     * @param c the collidable object that moved
+     */
+    void update(Collidable c);
+
+    /**
+     * Finds the closest collision information for an object moving along a trajectory.
+     *
+     * @param trajectory the line representing the trajectory of the object
+     * @return the closest collision information, or null if no collision occurs
+     */
+    default CollisionInfo getClosestCollision(Line trajectory) {
+        return getClosestCollision(trajectory, 0);
+    }
+
+    /**
+     * Finds the closest collision information for a circle whose center moves along a trajectory.
+     *
+     * @param trajectory the line representing the trajectory of the circle's center
+     * @param radius     the radius of the circle, or 0 for a point
+     * @return the closest collision information, or null if no collision occurs
+     */
+    default CollisionInfo getClosestCollision(Line trajectory, double radius) {
+        return getClosestCollision(trajectory, radius, null);
+    }
+
+    /**
+     * Finds the closest collision information for a circle whose center moves along a trajectory,
+     * and reports how much work the query did.
+     *
+     * @param trajectory the line representing the trajectory of the circle's center
+     * @param radius     the radius of the circle, or 0 for a point
+     * @param stats      where to report the work of the query, or null
+     * @return the closest collision information, or null if no collision occurs
+     */
+    CollisionInfo getClosestCollision(Line trajectory, double radius, QueryStats stats);
+}
@@ -5,6 +5,7 @@ import Geometry.Point;
 public class CollisionInfo {
     private Point collisionPoint;
     private Collidable collisionObject;
+    private double timeOfImpact;
 
     /**
      * author Ofek Mazor
@@ -15,8 +16,21 @@ public class CollisionInfo {
      * @param collisionObject the Gameps.Collidable object involved in the collision
      */
     public CollisionInfo(Point collisionPoint, Collidable collisionObject) {
+        this(collisionPoint, collisionObject, -1);
+    }
+
+    /**
+     * Constructs a Gameps.CollisionInfo object that also records when along the trajectory
+     * the collision occurs.
+     *
+     * @param collisionPoint the point at which the collision occurs
+     * @param collisionObject the Gameps.Collidable object involved in the collision
+     * @param timeOfImpact the fraction of the trajectory covered before the collision, between 0 and 1
+     */
+    public CollisionInfo(Point collisionPoint, Collidable collisionObject, double timeOfImpact) {
         this.collisionPoint = collisionPoint;
         this.collisionObject = collisionObject;
+        this.timeOfImpact = timeOfImpact;
     }
 
     /**
@@ -36,5 +50,14 @@ public class CollisionInfo {
     public Collidable collisionObject() {
         return collisionObject;
     }
-}
 
+    /**
+     * Returns the fraction of the trajectory covered before the collision occurs.
+     * 0 means the collision happens at the start of the trajectory and 1 at its end.
+     *
+     * @return the time of impact, or -1 if it is not known
+     */
+    public double timeOfImpact() {
+        return timeOfImpact;
+    }
+}
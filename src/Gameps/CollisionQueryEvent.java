@@ -0,0 +1,32 @@
+package Gameps;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * A Flight Recorder event for a single closest-collision query of a Gameps.GameEnvironment.
+ */
+@Name("arkanoid.CollisionQuery")
+@Label("Collision Query")
+@Category("Arkanoid")
+@Description("A closest-collision query and how much work it did")
+class CollisionQueryEvent extends Event {
+    @Label("Collidables Tested")
+    @Description("Collidables whose rectangles were tested against the trajectory")
+    int collidablesTested;
+
+    @Label("Nodes Visited")
+    @Description("Grid cells or tree nodes visited to find the collidables")
+    int nodesVisited;
+
+    @Label("Radius")
+    double radius;
+
+    @Label("Hit")
+    boolean hit;
+}
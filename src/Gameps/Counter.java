@@ -36,6 +36,15 @@ public class Counter {
         this.number -= number;
     }
 
+    /**
+     * Sets the counter to a value, for restoring a saved game.
+     *
+     * @param number the new value of the counter
+     */
+    void setValue(int number) {
+        this.number = number;
+    }
+
     /**
      * Retrieves the current value of the counter.
      *
@@ -0,0 +1,284 @@
+package Gameps;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * DrawBatch is a draw surface that records draw calls instead of making them, grouped by
+ * color, and sends them to the real surface on flush() with a single color change per color.
+ * Calls of the same color keep their order, and colors are sent in the order they were last
+ * drawn with, so whatever was drawn last stays on top: block fills go down before the black
+ * outlines drawn after them. Apart from that, calls of different colors may be reordered, so
+ * shapes of different colors that overlap can end up stacked differently than drawn.
+ * Images are drawn at once, after everything recorded before them, since they ignore the
+ * current color. The command buffers are kept from one frame to the next, so a batch only
+ * allocates while it grows.
+ */
+public class DrawBatch implements DrawSurface {
+    private static final int FILL_RECTANGLE = 0;
+    private static final int DRAW_RECTANGLE = 1;
+    private static final int FILL_OVAL = 2;
+    private static final int DRAW_OVAL = 3;
+    private static final int FILL_CIRCLE = 4;
+    private static final int DRAW_CIRCLE = 5;
+    private static final int DRAW_LINE = 6;
+    private static final int DRAW_TEXT = 7;
+    private static final int FILL_POLYGON = 8;
+    private static final int DRAW_POLYGON = 9;
+    private DrawSurface target;
+    private Map<Color, Bucket> buckets;
+    // The buckets with calls to send, sorted by their last use when the batch is flushed
+    private List<Bucket> pending;
+    private Bucket current;
+    private long sequence;
+    private int colorChanges;
+
+    /**
+     * Constructs an empty DrawBatch.
+     */
+    public DrawBatch() {
+        this.buckets = new HashMap<>();
+        this.pending = new ArrayList<>();
+    }
+
+    /**
+     * Starts a new batch for the given surface.
+     *
+     * @param surface the surface the batch is sent to
+     */
+    public void begin(DrawSurface surface) {
+        this.target = surface;
+        this.current = null;
+        this.colorChanges = 0;
+    }
+
+    /**
+     * Sends every recorded call to the surface, one color at a time, and empties the batch.
+     */
+    public void flush() {
+        this.pending.sort((a, b) -> Long.compare(a.lastUse, b.lastUse));
+        for (Bucket bucket : this.pending) {
+            this.target.setColor(bucket.color);
+            this.colorChanges++;
+            bucket.sendTo(this.target);
+        }
+        this.pending.clear();
+    }
+
+    /**
+     * Returns how many color changes were sent to the surface since the batch began.
+     *
+     * @return the number of color changes
+     */
+    public int getColorChanges() {
+        return this.colorChanges;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.target.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return this.target.getHeight();
+    }
+
+    @Override
+    public void setColor(Color color) {
+        if (this.current != null && this.current.color.equals(color)) {
+            return;
+        }
+        Bucket bucket = this.buckets.get(color);
+        if (bucket == null) {
+            bucket = new Bucket(color);
+            this.buckets.put(color, bucket);
+        }
+        this.current = bucket;
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        record(DRAW_LINE, x1, y1, x2, y2, null);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        record(DRAW_OVAL, x, y, width, height, null);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        record(FILL_OVAL, x, y, width, height, null);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        record(DRAW_RECTANGLE, x, y, width, height, null);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        record(FILL_RECTANGLE, x, y, width, height, null);
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image image) {
+        flush();
+        this.target.drawImage(x, y, image);
+        // The surface's color is unknown after the flush, so the next call must set it again
+        this.current = null;
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        record(DRAW_CIRCLE, x, y, r, 0, null);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        record(FILL_CIRCLE, x, y, r, 0, null);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        record(DRAW_TEXT, x, y, fontSize, 0, text);
+    }
+
+    @Override
+    public void drawPolygon(Polygon polygon) {
+        record(DRAW_POLYGON, 0, 0, 0, 0, polygon);
+    }
+
+    @Override
+    public void fillPolygon(Polygon polygon) {
+        record(FILL_POLYGON, 0, 0, 0, 0, polygon);
+    }
+
+    /**
+     * Records a call in the bucket of the current color.
+     *
+     * @param op  the kind of call
+     * @param a   the first argument
+     * @param b   the second argument
+     * @param c   the third argument
+     * @param e   the fourth argument
+     * @param arg the object argument, or null
+     */
+    private void record(int op, int a, int b, int c, int e, Object arg) {
+        if (this.current == null) {
+            // Nothing was drawn with a color yet, which the surface itself would allow
+            setColor(Color.BLACK);
+        }
+        if (this.current.size == 0) {
+            this.pending.add(this.current);
+        }
+        this.current.lastUse = ++this.sequence;
+        this.current.add(op, a, b, c, e, arg);
+    }
+
+    /**
+     * The recorded calls of a single color.
+     */
+    private static final class Bucket {
+        private static final int FIELDS = 5;
+        private final Color color;
+        private int[] calls = new int[FIELDS * 16];
+        private Object[] args = new Object[16];
+        private int size;
+        private long lastUse;
+
+        /**
+         * Constructs an empty bucket.
+         *
+         * @param color the color of the calls
+         */
+        private Bucket(Color color) {
+            this.color = color;
+        }
+
+        /**
+         * Records a call.
+         *
+         * @param op  the kind of call
+         * @param a   the first argument
+         * @param b   the second argument
+         * @param c   the third argument
+         * @param e   the fourth argument
+         * @param arg the object argument, or null
+         */
+        private void add(int op, int a, int b, int c, int e, Object arg) {
+            if (this.size == this.args.length) {
+                this.calls = Arrays.copyOf(this.calls, this.calls.length * 2);
+                this.args = Arrays.copyOf(this.args, this.args.length * 2);
+            }
+            int i = this.size * FIELDS;
+            this.calls[i] = op;
+            this.calls[i + 1] = a;
+            this.calls[i + 2] = b;
+            this.calls[i + 3] = c;
+            this.calls[i + 4] = e;
+            this.args[this.size] = arg;
+            this.size++;
+        }
+
+        /**
+         * Makes the recorded calls on a surface whose color is already set, and empties the bucket.
+         *
+         * @param d the surface
+         */
+        private void sendTo(DrawSurface d) {
+            for (int n = 0; n < this.size; n++) {
+                int i = n * FIELDS;
+                int a = this.calls[i + 1];
+                int b = this.calls[i + 2];
+                int c = this.calls[i + 3];
+                int e = this.calls[i + 4];
+                switch (this.calls[i]) {
+                    case FILL_RECTANGLE:
+                        d.fillRectangle(a, b, c, e);
+                        break;
+                    case DRAW_RECTANGLE:
+                        d.drawRectangle(a, b, c, e);
+                        break;
+                    case FILL_OVAL:
+                        d.fillOval(a, b, c, e);
+                        break;
+                    case DRAW_OVAL:
+                        d.drawOval(a, b, c, e);
+                        break;
+                    case FILL_CIRCLE:
+                        d.fillCircle(a, b, c);
+                        break;
+                    case DRAW_CIRCLE:
+                        d.drawCircle(a, b, c);
+                        break;
+                    case DRAW_LINE:
+                        d.drawLine(a, b, c, e);
+                        break;
+                    case DRAW_TEXT:
+                        d.drawText(a, b, (String) this.args[n], c);
+                        break;
+                    case FILL_POLYGON:
+                        d.fillPolygon((Polygon) this.args[n]);
+                        break;
+                    default:
+                        d.drawPolygon((Polygon) this.args[n]);
+                        break;
+                }
+                this.args[n] = null;
+            }
+            this.size = 0;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package Gameps;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * FramePacer keeps frames on a fixed schedule measured with System.nanoTime, and records
+ * how far each frame started from its scheduled time (the frame jitter).
+ * Frames that fall behind do not push the schedule back by their delay: the schedule is
+ * only reset once a whole frame has been missed.
+ */
+public class FramePacer {
+    // Sleeping is only accurate to about a millisecond, so the last stretch is spent parking
+    private static final long PARK_THRESHOLD_NANOS = 1_000_000;
+    private final long frameNanos;
+    private long nextFrame;
+    private long frames;
+    private double meanJitter;
+    private double jitterSquares;
+    private long maxJitter;
+
+    /**
+     * Constructs a FramePacer for the given frame rate.
+     *
+     * @param framesPerSecond the number of frames to show per second
+     */
+    public FramePacer(int framesPerSecond) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("the frame rate must be positive");
+        }
+        this.frameNanos = 1_000_000_000L / framesPerSecond;
+        this.nextFrame = System.nanoTime() + this.frameNanos;
+    }
+
+    /**
+     * Waits until the next frame is due and records the jitter of the frame.
+     */
+    public void awaitNextFrame() {
+        long now = System.nanoTime();
+        long remaining = this.nextFrame - now;
+        if (remaining > PARK_THRESHOLD_NANOS) {
+            try {
+                Thread.sleep((remaining - PARK_THRESHOLD_NANOS) / 1_000_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        while ((remaining = this.nextFrame - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+        now = System.nanoTime();
+        record(now - this.nextFrame);
+        this.nextFrame += this.frameNanos;
+        if (now - this.nextFrame > this.frameNanos) {
+            // A whole frame was missed: start a new schedule instead of rushing to catch up
+            this.nextFrame = now + this.frameNanos;
+        }
+    }
+
+    /**
+     * Records the jitter of one frame (Welford's running mean and variance).
+     *
+     * @param jitter how late the frame started, in nanoseconds
+     */
+    private void record(long jitter) {
+        this.frames++;
+        double delta = jitter - this.meanJitter;
+        this.meanJitter += delta / this.frames;
+        this.jitterSquares += delta * (jitter - this.meanJitter);
+        this.maxJitter = Math.max(this.maxJitter, jitter);
+    }
+
+    /**
+     * Returns the number of frames paced so far.
+     *
+     * @return the number of frames
+     */
+    public long getFrameCount() {
+        return this.frames;
+    }
+
+    /**
+     * Returns how late frames started on average.
+     *
+     * @return the mean frame jitter, in nanoseconds
+     */
+    public double getMeanJitterNanos() {
+        return this.meanJitter;
+    }
+
+    /**
+     * Returns the standard deviation of the frame jitter.
+     *
+     * @return the standard deviation of the frame jitter, in nanoseconds
+     */
+    public double getJitterStdDevNanos() {
+        return this.frames < 2 ? 0 : Math.sqrt(this.jitterSquares / (this.frames - 1));
+    }
+
+    /**
+     * Returns how late the worst frame started.
+     *
+     * @return the maximum frame jitter, in nanoseconds
+     */
+    public long getMaxJitterNanos() {
+        return this.maxJitter;
+    }
+}
@@ -0,0 +1,165 @@
+package Gameps;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * FrameProfiler keeps a Gameps.LatencyHistogram for every phase of a step and of a frame, so
+ * the time of a frame can be broken down without attaching a profiler. The collision queries
+ * and the hit handling happen many times within a step, so their times are added up over the
+ * step and recorded once when the step ends.
+ * Every histogram is written by a single thread; the steps' phases by the simulation and the
+ * frames' phases by whichever thread draws. Reading a histogram from another thread, for
+ * example to show it on screen, gives approximate numbers.
+ */
+public class FrameProfiler {
+    /**
+     * The phases that are timed.
+     */
+    public enum Phase {
+        /**
+         * Reading the keyboard before a step.
+         */
+        INPUT("input"),
+        /**
+         * Moving every sprite in a step, including its collision queries and hits.
+         */
+        UPDATE("update"),
+        /**
+         * The collision queries of a step.
+         */
+        COLLISION("collide"),
+        /**
+         * The hit handling of a step: the collidables' responses and the hit listeners.
+         */
+        HITS("hits"),
+        /**
+         * Drawing a frame.
+         */
+        DRAW("draw"),
+        /**
+         * Showing a frame on the display.
+         */
+        SHOW("show");
+
+        private final String label;
+
+        /**
+         * Constructs a phase.
+         *
+         * @param label the short name of the phase in reports
+         */
+        Phase(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Returns the short name of the phase.
+         *
+         * @return the name
+         */
+        public String label() {
+            return this.label;
+        }
+    }
+
+    private final LatencyHistogram[] histograms;
+    private long collisionNanos;
+    private long hitNanos;
+
+    /**
+     * Constructs a FrameProfiler with empty histograms.
+     */
+    public FrameProfiler() {
+        Phase[] phases = Phase.values();
+        this.histograms = new LatencyHistogram[phases.length];
+        for (int i = 0; i < phases.length; i++) {
+            this.histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records the duration of a phase.
+     *
+     * @param phase the phase
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+        this.histograms[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Adds the time of a single collision query to the current step.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void addCollision(long nanos) {
+        this.collisionNanos += nanos;
+    }
+
+    /**
+     * Adds the time of handling a single hit to the current step.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void addHit(long nanos) {
+        this.hitNanos += nanos;
+    }
+
+    /**
+     * Ends a step: records the collision and hit times added up during the step.
+     */
+    public void endStep() {
+        record(Phase.COLLISION, this.collisionNanos);
+        record(Phase.HITS, this.hitNanos);
+        this.collisionNanos = 0;
+        this.hitNanos = 0;
+    }
+
+    /**
+     * Returns the histogram of a phase.
+     *
+     * @param phase the phase
+     * @return the histogram
+     */
+    public LatencyHistogram histogram(Phase phase) {
+        return this.histograms[phase.ordinal()];
+    }
+
+    /**
+     * Forgets every recorded duration.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : this.histograms) {
+            histogram.reset();
+        }
+        this.collisionNanos = 0;
+        this.hitNanos = 0;
+    }
+
+    /**
+     * Returns a one-line summary of a phase: its median, 99th percentile and maximum.
+     *
+     * @param phase the phase
+     * @return the summary, in milliseconds
+     */
+    public String summary(Phase phase) {
+        LatencyHistogram histogram = histogram(phase);
+        return String.format("%-7s p50 %6.3f  p99 %6.3f  max %6.3f ms", phase.label(),
+                histogram.getPercentile(50) / 1e6, histogram.getPercentile(99) / 1e6, histogram.getMax() / 1e6);
+    }
+
+    /**
+     * Returns the summaries of every phase that recorded anything, one per line.
+     *
+     * @return the report
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            if (histogram(phase).getCount() > 0) {
+                report.append(summary(phase)).append(System.lineSeparator());
+            }
+        }
+        return report.toString();
+    }
+}
@@ -3,12 +3,19 @@ package Gameps;
 import Geometry.Point;
 import Geometry.Rectangle;
 import biuoop.DrawSurface;
-import biuoop.GUI;
-import biuoop.KeyboardSensor;
-import biuoop.Sleeper;
 import sprites.*;
 
 import java.awt.*;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -21,8 +28,8 @@ import java.awt.*;
 public class Game {
     private SpriteCollection sprites;
     private GameEnvironment environment;
-    private GUI gui;
-    private KeyboardSensor keyboard;
+    private GameDisplay display;
+    private TickKeyboard keyboard;
     private Counter counterBlocks;
     private Counter remainingBlocks;
     private Counter score;
@@ -30,20 +37,108 @@ public class Game {
     private static final int PADDLE_WIDTH = 150;
     private static final int PADDLE_HEIGHT = 20;
     private static final int PADDLE_SPEED = 11;
+    // Speeds are measured in pixels per frame at this rate
+    private static final int REFERENCE_RATE = 60;
+    private int simulationRate = REFERENCE_RATE;
+    private int framesPerSecond = 60;
+    private int maxCatchUpSteps = 5;
+    private int maxBouncesPerTick = Ball.DEFAULT_MAX_BOUNCES_PER_TICK;
+    private FramePacer framePacer;
     private ScoreTrackingListener scoreTrackingListener;
+    private BlockRemover blockRemover;
+    private InputRecorder recorder;
+    private Paddle paddle;
+    private CheckpointStore checkpoints;
+    private int snapshotEvery;
+    private int stepsSinceSnapshot;
+    private int journaledScore;
+    private WorldStats stats;
+    private StaticLayer staticLayer;
+    private boolean cachedBackground = true;
+    private boolean pipelined;
+    // The drawing and profiling settings may be changed while the render thread reads them
+    private volatile boolean batchedDrawing = true;
+    private DrawBatch batch = new DrawBatch();
+    private HitDispatcher hitDispatcher;
+    private FrameProfiler profiler = new FrameProfiler();
+    private volatile boolean profiling = true;
+    private volatile boolean profilerOverlay;
+    // The overlay text, refreshed every OVERLAY_REFRESH frames rather than built in every frame
+    private static final int OVERLAY_REFRESH = 30;
+    private String[] overlayLines = new String[0];
+    private long overlayFrames;
+    // The counters' totals at the end of the last step, to tell the work of each step apart
+    private long lastQueries;
+    private long lastTested;
+    private long lastVisited;
+    private long lastHits;
+    // Every level block gets a fixed index, so snapshots can mark the live ones in a bitmap.
+    // The table grows by doubling, and the first blockCount entries are in use. A slot is
+    // written once, before its live bit is first published, so the render thread may read
+    // the table while new blocks are added past the published ones.
+    private Block[] blockTable = new Block[0];
+    private int blockCount;
+    private Map<Block, Integer> blockIndexes = new IdentityHashMap<>();
+    private long[] liveBlocks = new long[0];
+    // The listener flags of every indexed block, or NOT_LEVEL for blocks that are not part of
+    // the level, such as the death region
+    private byte[] levelFlags = new byte[0];
+    private static final byte NOT_LEVEL = -1;
 
     /**
      * Constructor for the Gameps.Game class.
      * Initializes the sprite collection and game environment.
      */
     public Game() {
+        this(new GameEnvironment());
+    }
+
+    /**
+     * Constructor for the Gameps.Game class that answers collision queries with the given index,
+     * for example a Gameps.UniformGridIndex or a Gameps.AabbTreeIndex.
+     *
+     * @param index an empty collision index
+     */
+    public Game(CollisionIndex index) {
+        this(new GameEnvironment(index));
+    }
+
+    /**
+     * Initializes the sprite collection and the counters around the given game environment.
+     *
+     * @param environment an empty game environment
+     */
+    private Game(GameEnvironment environment) {
         this.sprites = new SpriteCollection();
-        this.environment = new GameEnvironment();
+        this.environment = environment;
+        this.environment.setProfiler(this.profiler);
         this.counterBlocks = new Counter(0);
         this.remainingBlocks = new Counter(0);
         this.remainingBalls = new Counter(0);
         this.score = new Counter(0);
         this.scoreTrackingListener = new ScoreTrackingListener(this.score);
+        this.staticLayer = new StaticLayer(800, 600, Palette.BACKGROUND);
+        this.stats = new WorldStats() {
+            @Override
+            public int blocks() {
+                return environment.getPopulation().count(ObjectType.BLOCK);
+            }
+
+            @Override
+            public int walls() {
+                return environment.getPopulation().count(ObjectType.WALL);
+            }
+
+            @Override
+            public int balls() {
+                return sprites.getPopulation().count(ObjectType.BALL);
+            }
+
+            @Override
+            public int paddles() {
+                return environment.getPopulation().count(ObjectType.PADDLE);
+            }
+        };
     }
 
     /**
@@ -64,6 +159,15 @@ public class Game {
         environment.addCollidable(c);
     }
 
+    /**
+     * Adds a collidable object that moves often, such as the paddle, to the game environment.
+     *
+     * @param c the collidable object to add.
+     */
+    public void addDynamicCollidable(Collidable c) {
+        environment.addDynamicCollidable(c);
+    }
+
     /**
      * Adds a sprite to the sprite collection.
      *
@@ -71,6 +175,67 @@ public class Game {
      */
     public void addSprite(Sprite s) {
         sprites.addSprite(s);
+        if (s.isStatic() && s instanceof Block) {
+            this.staticLayer.add((Block) s);
+            setLive((Block) s, true);
+        }
+    }
+
+    /**
+     * Marks a level block as alive or removed in the bitmap shared with snapshots, giving it
+     * an index first if it has none yet.
+     *
+     * @param block the block
+     * @param live  true if the block is alive
+     */
+    private void setLive(Block block, boolean live) {
+        Integer index = this.blockIndexes.get(block);
+        if (index == null) {
+            if (!live) {
+                return;
+            }
+            index = this.blockCount;
+            reserveBlocks(1);
+            this.blockIndexes.put(block, index);
+            this.blockTable[index] = block;
+            this.levelFlags[index] = NOT_LEVEL;
+            this.blockCount++;
+        }
+        if (live) {
+            this.liveBlocks[index >>> 6] |= 1L << index;
+        } else {
+            if (this.checkpoints != null && (this.liveBlocks[index >>> 6] & (1L << index)) != 0) {
+                this.checkpoints.blockRemoved(index);
+            }
+            this.liveBlocks[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Makes room in the block table, the level flags and the bitmap of live blocks for more
+     * blocks, at least doubling them when they are full, so adding blocks one by one takes
+     * amortized constant time.
+     *
+     * @param count the number of blocks to make room for
+     */
+    private void reserveBlocks(int count) {
+        int needed = this.blockCount + count;
+        if (needed <= this.blockTable.length) {
+            return;
+        }
+        int capacity = Math.max(needed, Math.max(64, this.blockTable.length * 2));
+        this.blockTable = Arrays.copyOf(this.blockTable, capacity);
+        this.levelFlags = Arrays.copyOf(this.levelFlags, capacity);
+        this.liveBlocks = Arrays.copyOf(this.liveBlocks, (capacity + 63) >>> 6);
+    }
+
+    /**
+     * Returns the number of words of the bitmap of live blocks that hold the blocks in use.
+     *
+     * @return the number of words in use
+     */
+    int getLiveWords() {
+        return (this.blockCount + 63) >>> 6;
     }
 
     /**
@@ -86,102 +251,974 @@ public class Game {
      * Initializes the game by setting up the GUI, keyboard, paddle, balls, walls, and blocks.
      */
     public void initialize() {
+        GameDisplay window = new GuiDisplay("Arkanoid", 800, 600);
+        initialize(window, new LiveKeyboard(window.getKeyboardSensor()));
+    }
+
+    /**
+     * Initializes the game on the given display, with the paddle controlled by the given keyboard.
+     * For a run with no display at all, pass a Gameps.HeadlessDisplay and a Gameps.ScriptedKeyboard.
+     *
+     * @param gameDisplay  the display to draw the game on
+     * @param tickKeyboard the keyboard that controls the paddle
+     */
+    public void initialize(GameDisplay gameDisplay, TickKeyboard tickKeyboard) {
+        addStockBalls();
+        initializeArena(gameDisplay, tickKeyboard);
+
+        // Create blocks with colors comfortable for a light blue background
+        int[] blocksInRow = {12, 11, 10, 9, 8, 7};
+        int yPosition = 100;
+
+        for (int i = 0; i < Palette.blockRowCount(); i++) {
+            for (int j = 0; j < blocksInRow[i]; j++) {
+                addLevelBlock(new Rectangle(new Point(50 + j * 50, yPosition), 50, 20), Palette.blockRow(i));
+            }
+            yPosition += 20;
+        }
+    }
+
+    /**
+     * Initializes the game like initialize(), with the blocks of a level file instead of the
+     * stock blocks.
+     *
+     * @param level the level file, as written by saveLevel()
+     * @throws IOException if the level file cannot be read
+     */
+    public void initialize(Path level) throws IOException {
+        GameDisplay window = new GuiDisplay("Arkanoid", 800, 600);
+        initialize(window, new LiveKeyboard(window.getKeyboardSensor()), level);
+    }
+
+    /**
+     * Initializes the game on the given display like initialize(), with the blocks of a level
+     * file instead of the stock blocks.
+     *
+     * @param gameDisplay  the display to draw the game on
+     * @param tickKeyboard the keyboard that controls the paddle
+     * @param level        the level file, as written by saveLevel()
+     * @throws IOException if the level file cannot be read
+     */
+    public void initialize(GameDisplay gameDisplay, TickKeyboard tickKeyboard, Path level) throws IOException {
+        addStockBalls();
+        initializeArena(gameDisplay, tickKeyboard);
+        loadLevel(level);
+    }
+
+    /**
+     * Adds the three balls every stock game starts with.
+     */
+    private void addStockBalls() {
+        addBall(new Point(400, 500), 6, Color.blue, Velocity.fromAngleAndSpeed(65, 7));
+        addBall(new Point(400, 500), 6, Color.red, Velocity.fromAngleAndSpeed(70, 7));
+        addBall(new Point(400, 500), 6, Color.yellow, Velocity.fromAngleAndSpeed(190, 7));
+    }
+
+    /**
+     * Initializes an empty arena on the given display: the walls, the paddle controlled by the
+     * given keyboard, and the death region below the screen, with no balls and no blocks.
+     * Levels other than the stock one are built on it with addBall() and addLevelBlock().
+     *
+     * @param gameDisplay  the display to draw the game on
+     * @param tickKeyboard the keyboard that controls the paddle
+     */
+    public void initializeArena(GameDisplay gameDisplay, TickKeyboard tickKeyboard) {
+        if (this.recorder != null) {
+            this.recorder.arena();
+        }
         BallRemover ballRemover = new BallRemover(this, this.remainingBalls); // Create a Gameps.BallRemover
-        this.gui = new GUI("Arkanoid", 800, 600);
-        this.keyboard = gui.getKeyboardSensor();
-        Ball ball1 = new Ball(new Point(400, 500), 6, Color.blue);
-        ball1.setVelocity(Velocity.fromAngleAndSpeed(65, 7));
-        ball1.setEnvironment(this.environment);
-        ball1.addToGame(this);
-        remainingBalls.increase(1);
-        Ball ball2 = new Ball(new Point(400, 500), 6, Color.red);
-        ball2.setVelocity(Velocity.fromAngleAndSpeed(70, 7));
-        ball2.setEnvironment(this.environment);
-        ball2.addToGame(this);
-        remainingBalls.increase(1);
-        Ball ball3 = new Ball(new Point(400, 500), 6, Color.yellow);
-        ball3.setVelocity(Velocity.fromAngleAndSpeed(190, 7));
-        ball3.setEnvironment(this.environment);
-        ball3.addToGame(this);
-        remainingBalls.increase(1);
+        this.display = gameDisplay;
+        this.keyboard = tickKeyboard;
         Block deathRegion = new Block(new Rectangle(new Point(0, 600), 800, 14), Color.BLACK);
         deathRegion.addHitListener(ballRemover);
         deathRegion.addToGame(this);
 
         // Create paddle
-        Paddle paddle = new Paddle(new Rectangle(new Point((double) (800 - PADDLE_WIDTH) / 2, 600 - PADDLE_HEIGHT - 20),
+        this.paddle = new Paddle(new Rectangle(new Point((double) (800 - PADDLE_WIDTH) / 2, 600 - PADDLE_HEIGHT - 20),
                 PADDLE_WIDTH, PADDLE_HEIGHT),
-                new Color(255, 69, 0), keyboard, PADDLE_SPEED);
-        paddle.addToGame(this);
+                Palette.PADDLE, keyboard, PADDLE_SPEED);
+        this.paddle.addToGame(this);
 
         // Create walls with a border effect
-        Wall leftWall = new Wall(new Rectangle(new Point(0, 0), 20, 600), new Color(169, 169, 169));
+        Wall leftWall = new Wall(new Rectangle(new Point(0, 0), 20, 600), Palette.WALL);
         leftWall.addToGame(this);
 
-        Wall rightWall = new Wall(new Rectangle(new Point(780, 0), 20, 600), new Color(169, 169, 169));
+        Wall rightWall = new Wall(new Rectangle(new Point(780, 0), 20, 600), Palette.WALL);
         rightWall.addToGame(this);
 
-        Wall topWall = new Wall(new Rectangle(new Point(0, 0), 800, 20), new Color(169, 169, 169));
+        Wall topWall = new Wall(new Rectangle(new Point(0, 0), 800, 20), Palette.WALL);
         topWall.addToGame(this);
 
-        BlockRemover blockRemover = new BlockRemover(this, counterBlocks); // Create a Gameps.BlockRemover
+        this.blockRemover = new BlockRemover(this, counterBlocks); // Create a Gameps.BlockRemover
+    }
 
-        // Create blocks with colors comfortable for a light blue background
-        Color[] colors = {new Color(255, 255, 0), new Color(255, 140, 0), new Color(0, 128, 0),
-                new Color(75, 0, 130), new Color(255, 20, 147), new Color(0, 191, 255)};
+    /**
+     * Adds a ball in play, which counts towards the remaining balls.
+     *
+     * @param center   the center of the ball
+     * @param radius   the radius of the ball
+     * @param color    the color of the ball
+     * @param velocity the velocity of the ball
+     * @return the ball
+     */
+    public Ball addBall(Point center, int radius, Color color, Velocity velocity) {
+        if (this.recorder != null) {
+            this.recorder.ball(center.getX(), center.getY(), radius, color, velocity);
+        }
+        Ball ball = new Ball(center, radius, color);
+        ball.setVelocity(velocity);
+        ball.setMaxBouncesPerTick(this.maxBouncesPerTick);
+        ball.setEnvironment(this.environment);
+        ball.addToGame(this);
+        remainingBalls.increase(1);
+        return ball;
+    }
 
-        int[] blocksInRow = {12, 11, 10, 9, 8, 7};
-        int yPosition = 100;
+    /**
+     * Adds a block of the level, which is removed and scores when a ball hits it, and which
+     * counts towards winning the game. The arena must be initialized first.
+     *
+     * @param rectangle the rectangle of the block
+     * @param color     the color of the block
+     * @return the block
+     */
+    public Block addLevelBlock(Rectangle rectangle, Color color) {
+        return addLevelBlock(rectangle, color, LevelFile.LEVEL_BLOCK);
+    }
 
-        for (int i = 0; i < colors.length; i++) {
-            for (int j = 0; j < blocksInRow[i]; j++) {
-                Block block = new Block(new Rectangle(new Point(50 + j * 50, yPosition), 50, 20), colors[i]);
-                block.addHitListener(blockRemover); // Register the Gameps.BlockRemover as a listener to the block
-                block.addHitListener(scoreTrackingListener);
-                remainingBlocks.increase(1);
-                block.addToGame(this);
+    /**
+     * Adds a block of the level with the given listener flags. A block that is not
+     * LevelFile.REMOVABLE stays for the whole game and does not count towards winning it, and
+     * one that is not LevelFile.SCORING adds nothing to the score. The arena must be
+     * initialized first.
+     *
+     * @param rectangle the rectangle of the block
+     * @param color     the color of the block
+     * @param flags     the listener flags of the block, from LevelFile
+     * @return the block
+     */
+    public Block addLevelBlock(Rectangle rectangle, Color color, int flags) {
+        if (this.blockRemover == null) {
+            throw new IllegalStateException("the arena must be initialized before adding level blocks");
+        }
+        if (this.recorder != null) {
+            this.recorder.block(rectangle, color, flags);
+        }
+        Block block = new Block(rectangle, color);
+        attachListeners(block, flags);
+        block.addToGame(this);
+        this.levelFlags[this.blockIndexes.get(block)] = (byte) flags;
+        return block;
+    }
+
+    /**
+     * Adds many blocks of the level at once, with the same result as adding them one by one
+     * with addLevelBlock(), but with the block table grown once and the collision index built
+     * for the whole batch in a single pass.
+     *
+     * @param blocks the new blocks, with no listeners yet
+     * @param flags  the listener flags of every block, from LevelFile
+     * @param count  the number of blocks, from the start of the arrays
+     */
+    void addLevelBlocks(Block[] blocks, byte[] flags, int count) {
+        if (this.blockRemover == null) {
+            throw new IllegalStateException("the arena must be initialized before adding level blocks");
+        }
+        int first = this.blockCount;
+        if (count > this.blockIndexes.size()) {
+            Map<Block, Integer> grown = new IdentityHashMap<>(this.blockIndexes.size() + count);
+            grown.putAll(this.blockIndexes);
+            this.blockIndexes = grown;
+        }
+        reserveBlocks(count);
+        for (int i = 0; i < count; i++) {
+            Block block = blocks[i];
+            if (this.recorder != null) {
+                this.recorder.block(block.getCollisionRectangle(), block.getColor(), flags[i]);
+            }
+            attachListeners(block, flags[i]);
+            block.setGame(this);
+            int index = first + i;
+            this.blockTable[index] = block;
+            this.blockIndexes.put(block, index);
+            this.levelFlags[index] = flags[i];
+            this.liveBlocks[index >>> 6] |= 1L << index;
+        }
+        this.blockCount += count;
+        this.environment.addCollidables(blocks, count);
+        this.sprites.addSprites(blocks, count);
+        this.staticLayer.addAll(blocks, count);
+    }
+
+    /**
+     * Registers the listeners of a level block according to its flags, and counts it towards
+     * winning the game if it can be removed.
+     *
+     * @param block the block
+     * @param flags the listener flags of the block, from LevelFile
+     */
+    private void attachListeners(Block block, int flags) {
+        if ((flags & LevelFile.REMOVABLE) != 0) {
+            block.addHitListener(this.blockRemover); // Register the Gameps.BlockRemover as a listener to the block
+            remainingBlocks.increase(1);
+        }
+        if ((flags & LevelFile.SCORING) != 0) {
+            block.addHitListener(scoreTrackingListener);
+        }
+    }
+
+    /**
+     * Loads the blocks of a level file, as written by saveLevel(), into the game. The arena
+     * must be initialized first. The file is mapped into memory and its blocks are added in a
+     * single batch, so loading costs little more than making the blocks themselves.
+     *
+     * @param file the level file
+     * @return the number of blocks loaded
+     * @throws IOException if the file cannot be read or is not a valid level file
+     */
+    public int loadLevel(Path file) throws IOException {
+        return LevelFile.load(file, this);
+    }
+
+    /**
+     * Writes the level blocks still in the game to a level file, in the order they were added,
+     * so that loadLevel() builds the same level again.
+     *
+     * @param file the level file
+     * @throws IOException if the file cannot be written
+     */
+    public void saveLevel(Path file) throws IOException {
+        Block[] blocks = new Block[this.blockCount];
+        byte[] flags = new byte[this.blockCount];
+        int count = 0;
+        for (int i = 0; i < this.blockCount; i++) {
+            if (this.levelFlags[i] != NOT_LEVEL && (this.liveBlocks[i >>> 6] & (1L << i)) != 0) {
+                blocks[count] = this.blockTable[i];
+                flags[count++] = this.levelFlags[i];
             }
-            yPosition += 20;
         }
+        LevelFile.write(file, blocks, flags, count);
     }
 
     /**
-     * Starts the game loop, updating and rendering the game at a fixed frame rate.
+     * Starts recording the game into a stream: every ball, arena and level block added with
+     * addBall(), initializeArena() and addLevelBlock(), then the keys held in every step.
+     * Recording must start before the game is built, for example before initialize(), and the
+     * recording is complete once stopRecording() is called. The steps are fixed in length and
+     * the keys are read once per step, so the recording does not depend on the timing of run(),
+     * and replay() plays it back exactly. The simulation rate, batched hits and the bounces per
+     * step in effect when the first step runs are recorded too, since they change how the game
+     * plays; changing them later in the game is not recorded.
+     *
+     * @param out the stream to write the recording to, which the caller keeps and closes
+     */
+    public void startRecording(OutputStream out) {
+        if (this.display != null || this.remainingBalls.getValue() > 0) {
+            throw new IllegalStateException("recording must start before the game is built");
+        }
+        this.recorder = new InputRecorder(out);
+    }
+
+    /**
+     * Ends the recording started with startRecording() and flushes it to its stream.
+     * Nothing more is recorded after this.
+     */
+    public void stopRecording() {
+        if (this.recorder != null) {
+            this.recorder.finish();
+            this.recorder = null;
+        }
+    }
+
+    /**
+     * Checkpoints the game into a store: a full snapshot at once and then every given number of
+     * steps, and in between, every level block removed and every change of the score goes into
+     * the store's journal. A snapshot costs a copy of the game's state: a bit per block, a few
+     * bytes per ball, and a few bytes per stretch of the sprite order that the blocks removed so
+     * far have broken up, see Gameps.CheckpointState. It does not grow with the number of blocks
+     * left, so checkpointing often never stalls a step. To pick up a saved game after
+     * a restart, build the same level, restore it with CheckpointStore.restore(), and only then
+     * set the checkpoints again.
+     *
+     * @param store                 the store to checkpoint into, or null to stop checkpointing
+     * @param stepsBetweenSnapshots the number of steps between full snapshots
+     */
+    public void setCheckpoints(CheckpointStore store, int stepsBetweenSnapshots) {
+        if (store != null && stepsBetweenSnapshots <= 0) {
+            throw new IllegalArgumentException("the steps between snapshots must be positive");
+        }
+        this.checkpoints = store;
+        this.snapshotEvery = stepsBetweenSnapshots;
+        this.stepsSinceSnapshot = 0;
+        if (store != null) {
+            store.save(this);
+            this.journaledScore = this.score.getValue();
+        }
+    }
+
+    /**
+     * Builds a game from a recording made with startRecording(), on a headless display with a
+     * keyboard that plays back the recorded keys, and with the recorded settings. Running the
+     * game with runHeadless() then reproduces the recorded game step by step, as fast as the CPU
+     * allows, and stops at the end of the recording.
+     *
+     * @param in the recording
+     * @return the game, ready to run
+     * @throws IOException if the recording cannot be read or is not a recording
+     */
+    public static Game replay(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != InputLog.MAGIC) {
+            throw new IOException("not an input recording");
+        }
+        int version = data.readUnsignedByte();
+        if (version != InputLog.VERSION && version != 1) {
+            throw new IOException("unsupported input recording version " + version);
+        }
+        Game game = new Game();
+        ReplayKeyboard keyboard = new ReplayKeyboard(data);
+        while (true) {
+            int tag = data.readUnsignedByte();
+            if (tag == InputLog.BALL) {
+                Point center = new Point(data.readDouble(), data.readDouble());
+                int radius = data.readInt();
+                Color color = new Color(data.readInt(), true);
+                game.addBall(center, radius, color, new Velocity(data.readDouble(), data.readDouble()));
+            } else if (tag == InputLog.ARENA) {
+                game.initializeArena(new HeadlessDisplay(800, 600), keyboard);
+            } else if (tag == InputLog.BLOCK) {
+                Point upperLeft = new Point(data.readDouble(), data.readDouble());
+                Rectangle rectangle = new Rectangle(upperLeft, data.readDouble(), data.readDouble());
+                game.addLevelBlock(rectangle, new Color(data.readInt(), true));
+            } else if (tag == InputLog.FLAGGED_BLOCK) {
+                Point upperLeft = new Point(data.readDouble(), data.readDouble());
+                Rectangle rectangle = new Rectangle(upperLeft, data.readDouble(), data.readDouble());
+                Color color = new Color(data.readInt(), true);
+                game.addLevelBlock(rectangle, color, data.readUnsignedByte());
+            } else if (tag == InputLog.KEYS) {
+                int rate = data.readInt();
+                if (rate > 0) {
+                    game.setSimulationRate(rate);
+                }
+                if (version > 1) {
+                    game.setBatchedHits((data.readUnsignedByte() & InputLog.BATCHED_HITS) != 0);
+                    long maxBounces = InputLog.readVarLong(data);
+                    if (maxBounces > 0) {
+                        game.setMaxBouncesPerTick((int) Math.min(maxBounces, Integer.MAX_VALUE));
+                    }
+                }
+                return game;
+            } else {
+                throw new IOException("unknown record " + tag + " in input recording");
+            }
+        }
+    }
+
+    /**
+     * Sets how many simulation steps run per second, independently of the frame rate.
+     *
+     * @param stepsPerSecond the simulation rate, for example 120 or 240
+     */
+    public void setSimulationRate(int stepsPerSecond) {
+        if (stepsPerSecond <= 0) {
+            throw new IllegalArgumentException("the simulation rate must be positive");
+        }
+        this.simulationRate = stepsPerSecond;
+    }
+
+    /**
+     * Sets how many frames are drawn per second.
+     *
+     * @param framesPerSecond the frame rate
+     */
+    public void setFrameRate(int framesPerSecond) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("the frame rate must be positive");
+        }
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    /**
+     * Sets how many simulation steps may run before a frame is drawn. When a frame takes
+     * longer than that, the game slows down instead of falling further behind.
+     *
+     * @param maxCatchUpSteps the maximum number of steps per frame
+     */
+    public void setMaxCatchUpSteps(int maxCatchUpSteps) {
+        if (maxCatchUpSteps <= 0) {
+            throw new IllegalArgumentException("at least one step per frame is required");
+        }
+        this.maxCatchUpSteps = maxCatchUpSteps;
+    }
+
+    /**
+     * Sets whether the background, blocks and walls are drawn from a cached offscreen layer,
+     * which is the default, or drawn from scratch in every frame.
+     *
+     * @param cachedBackground true to use the cached layer
+     */
+    public void setCachedBackground(boolean cachedBackground) {
+        this.cachedBackground = cachedBackground;
+    }
+
+    /**
+     * Sets whether frames are drawn through a Gameps.DrawBatch, which is the default, so draw
+     * calls are grouped by color and the color changes only once per color in every frame.
+     *
+     * @param batchedDrawing true to batch draw calls by color
+     */
+    public void setBatchedDrawing(boolean batchedDrawing) {
+        this.batchedDrawing = batchedDrawing;
+    }
+
+    /**
+     * Sets whether hit events are batched. When they are, a hit only records the event, and the
+     * hit listeners hear about all the hits of a step, in the order they happened, once every
+     * sprite has moved. A block that is broken during a step is then removed at the end of the
+     * step, so other balls may still bounce off it in the same step.
+     *
+     * @param batchedHits true to batch hit events
+     */
+    public void setBatchedHits(boolean batchedHits) {
+        if (batchedHits && this.hitDispatcher == null) {
+            this.hitDispatcher = new HitDispatcher(this);
+        } else if (!batchedHits && this.hitDispatcher != null) {
+            this.hitDispatcher.flush();
+            this.hitDispatcher = null;
+        }
+    }
+
+    /**
+     * Sets how many collisions every ball in play, and every ball added later with addBall(),
+     * may resolve within a single step. See Ball.setMaxBouncesPerTick().
+     *
+     * @param maxBouncesPerTick the maximum number of collisions per step, at least 1
+     */
+    public void setMaxBouncesPerTick(int maxBouncesPerTick) {
+        if (maxBouncesPerTick < 1) {
+            throw new IllegalArgumentException("a ball must be allowed at least one bounce per tick");
+        }
+        this.maxBouncesPerTick = maxBouncesPerTick;
+        for (int i = 0; i < this.sprites.size(); i++) {
+            if (this.sprites.getSprite(i) instanceof Ball) {
+                ((Ball) this.sprites.getSprite(i)).setMaxBouncesPerTick(maxBouncesPerTick);
+            }
+        }
+    }
+
+    /**
+     * Returns the dispatcher that collects the hit events of a step.
+     *
+     * @return the hit dispatcher, or null if hit events are not batched
+     */
+    public HitDispatcher getHitDispatcher() {
+        return this.hitDispatcher;
+    }
+
+    /**
+     * Sets whether the phases of every step and frame are timed, which is the default.
+     *
+     * @param profiling true to time the phases
+     */
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+        this.environment.setProfiler(profiling ? this.profiler : null);
+    }
+
+    /**
+     * Sets whether the timing summaries are shown on screen, next to the score.
+     *
+     * @param profilerOverlay true to show the summaries
+     */
+    public void setProfilerOverlay(boolean profilerOverlay) {
+        this.profilerOverlay = profilerOverlay;
+    }
+
+    /**
+     * Returns the always-on counters of the collision engine: queries, collidables tested,
+     * hits and steps, from which the work per step and per query follows.
+     *
+     * @return the counters
+     */
+    public CollisionCounters getCounters() {
+        return this.environment.getCounters();
+    }
+
+    /**
+     * Returns the profiler with the timing histograms of every phase, for shown and headless
+     * runs alike.
+     *
+     * @return the profiler
+     */
+    public FrameProfiler getProfiler() {
+        return this.profiler;
+    }
+
+    /**
+     * Sets whether run() draws on a separate render thread. The simulation then publishes a
+     * snapshot of the world after every step, and the render thread draws the newest one, so
+     * neither thread ever waits for the other.
+     *
+     * @param pipelined true to draw on a separate thread
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Sets the pool the balls look up their collisions on in parallel, or null to run every step
+     * on the game thread only. Hits, listeners and removals always happen on the game thread in
+     * the same order, so the game plays out exactly the same either way.
+     *
+     * @param updatePool the pool to use, for example ForkJoinPool.commonPool(), or null
+     */
+    public void setUpdatePool(ForkJoinPool updatePool) {
+        this.sprites.setUpdatePool(updatePool);
+    }
+
+    /**
+     * Returns the frame pacer of the current or last run, with its frame jitter statistics.
+     *
+     * @return the frame pacer, or null if the game has not run yet
+     */
+    public FramePacer getFramePacer() {
+        return this.framePacer;
+    }
+
+    /**
+     * Checks if the game is over.
+     *
+     * @return true if the player won or lost all the balls, false otherwise
+     */
+    public boolean isOver() {
+        return checkWin() || remainingBalls.getValue() == 0;
+    }
+
+    /**
+     * Starts the game loop. The simulation advances in fixed steps at the simulation rate,
+     * measured with System.nanoTime, so a slow frame never slows the game down. Frames are drawn
+     * at the frame rate, with moving sprites placed between their last two simulated states.
      */
     public void run() {
-        int framesPerSecond = 60;
-        int millisecondsPerFrame = 1000 / framesPerSecond;
-        Sleeper sleeper = new Sleeper();
-
-        while (!checkWin() && remainingBalls.getValue() != 0) {
-            long startTime = System.currentTimeMillis();
-            DrawSurface d = gui.getDrawSurface();
-            d.setColor(new Color(173, 216, 230)); // Light blue background
-            d.fillRectangle(0, 0, 800, 600);
-            d.setColor(new Color(0, 0, 0)); // Black color for text
+        if (this.pipelined) {
+            runPipelined();
+            return;
+        }
+        long stepNanos = 1_000_000_000L / this.simulationRate;
+        double dt = (double) REFERENCE_RATE / this.simulationRate;
+        this.framePacer = new FramePacer(this.framesPerSecond);
+        long accumulator = 0;
+        long previous = System.nanoTime();
+
+        while (!isOver()) {
+            long now = System.nanoTime();
+            accumulator += now - previous;
+            previous = now;
+            int steps = 0;
+            while (accumulator >= stepNanos && steps < this.maxCatchUpSteps && !isOver()) {
+                step(dt);
+                accumulator -= stepNanos;
+                steps++;
+            }
+            if (steps == this.maxCatchUpSteps) {
+                // Drop the backlog rather than spiral further behind
+                accumulator = Math.min(accumulator, stepNanos);
+            }
+            double alpha = Math.min(1.0, (double) accumulator / stepNanos);
+
+            long drawStart = System.nanoTime();
+            DrawSurface frame = display.getDrawSurface();
+            DrawSurface d = frame;
+            if (this.batchedDrawing) {
+                this.batch.begin(frame);
+                d = this.batch;
+            }
+            if (this.cachedBackground) {
+                this.staticLayer.drawOn(d);
+            } else {
+                d.setColor(Palette.BACKGROUND); // Light blue background
+                d.fillRectangle(0, 0, 800, 600);
+            }
+            d.setColor(Palette.TEXT); // Black color for text
             d.drawText(600, 80, "Score: " + score.getValue(), 16);
-            this.sprites.drawAllOn(d);
-            gui.show(d);
-            this.sprites.notifyAllTimePassed();
+            if (this.profilerOverlay) {
+                drawOverlay(d);
+            }
+            if (this.cachedBackground) {
+                this.sprites.drawMovingOn(d, alpha);
+            } else {
+                this.sprites.drawAllOn(d, alpha);
+            }
+            if (d != frame) {
+                this.batch.flush();
+            }
+            long showStart = System.nanoTime();
+            display.show(frame);
+            recordFrame(drawStart, showStart);
+            this.framePacer.awaitNextFrame();
+        }
+        showResult();
+    }
+
+    /**
+     * Runs the game with the simulation on the calling thread and the drawing on a render
+     * thread. The simulation steps at the simulation rate and publishes a snapshot after every
+     * step through a triple buffer. The render thread only ever reads snapshots and the level
+     * blocks, which never change, so it cannot disturb the simulation, and a slow frame never
+     * holds up a step.
+     */
+    private void runPipelined() {
+        double dt = (double) REFERENCE_RATE / this.simulationRate;
+        TripleBuffer<WorldSnapshot> snapshots = new TripleBuffer<>(WorldSnapshot::new);
+        publish(snapshots);
+        this.framePacer = new FramePacer(this.framesPerSecond);
+        FramePacer renderPacer = this.framePacer;
+        Thread renderer = new Thread(() -> render(snapshots, renderPacer), "arkanoid-render");
+        renderer.start();
+
+        FramePacer stepPacer = new FramePacer(this.simulationRate);
+        while (!isOver()) {
+            step(dt);
+            publish(snapshots);
+            stepPacer.awaitNextFrame();
+        }
+        try {
+            renderer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        showResult();
+    }
 
-            long usedTime = System.currentTimeMillis() - startTime;
-            long milliSecondLeftToSleep = millisecondsPerFrame - usedTime;
-            if (milliSecondLeftToSleep > 0) {
-                sleeper.sleepFor(milliSecondLeftToSleep);
+    /**
+     * Fills the writer's snapshot with the current step and publishes it.
+     *
+     * @param snapshots the buffer shared with the render thread
+     */
+    private void publish(TripleBuffer<WorldSnapshot> snapshots) {
+        WorldSnapshot snapshot = snapshots.getWriteBuffer();
+        snapshot.clear();
+        this.sprites.writeAllTo(snapshot);
+        snapshot.setBlocks(this.blockTable, this.liveBlocks);
+        snapshot.setStatus(this.score.getValue(), isOver());
+        snapshots.publish();
+    }
+
+    /**
+     * The render thread: draws the newest snapshot once per frame, until it draws one from a
+     * step in which the game was over. The blocks are kept on the render thread's own cached
+     * layer, which is brought up to date from the bitmap of live blocks.
+     *
+     * @param snapshots the buffer shared with the simulation
+     * @param pacer     the pacer of the frames
+     */
+    private void render(TripleBuffer<WorldSnapshot> snapshots, FramePacer pacer) {
+        StaticLayer layer = new StaticLayer(800, 600, Palette.BACKGROUND);
+        long[] drawn = new long[0];
+        // The batch of this thread, never shared with the simulation thread
+        DrawBatch renderBatch = new DrawBatch();
+        while (true) {
+            snapshots.update();
+            WorldSnapshot snapshot = snapshots.getReadBuffer();
+            Block[] blocks = snapshot.blocks();
+            if (drawn.length < snapshot.liveWords()) {
+                drawn = Arrays.copyOf(drawn, snapshot.liveWords());
+            }
+            for (int w = 0; w < snapshot.liveWords(); w++) {
+                long changed = drawn[w] ^ snapshot.liveWord(w);
+                while (changed != 0) {
+                    int bit = Long.numberOfTrailingZeros(changed);
+                    changed &= changed - 1;
+                    Block block = blocks[w * 64 + bit];
+                    if ((snapshot.liveWord(w) & (1L << bit)) != 0) {
+                        layer.add(block);
+                    } else {
+                        layer.remove(block);
+                    }
+                }
+                drawn[w] = snapshot.liveWord(w);
+            }
+
+            long drawStart = System.nanoTime();
+            DrawSurface frame = display.getDrawSurface();
+            DrawSurface d = frame;
+            if (this.batchedDrawing) {
+                renderBatch.begin(frame);
+                d = renderBatch;
+            }
+            layer.drawOn(d);
+            d.setColor(Palette.TEXT); // Black color for text
+            d.drawText(600, 80, "Score: " + snapshot.score(), 16);
+            if (this.profilerOverlay) {
+                drawOverlay(d);
             }
+            snapshot.drawMovingOn(d);
+            // Batching may be switched off mid-frame by another thread, so flush whatever began
+            if (d != frame) {
+                renderBatch.flush();
+            }
+            long showStart = System.nanoTime();
+            display.show(frame);
+            recordFrame(drawStart, showStart);
+            if (snapshot.isOver()) {
+                return;
+            }
+            pacer.awaitNextFrame();
         }
+    }
 
+    /**
+     * Shows the result of the game for a few seconds, then closes the display.
+     */
+    private void showResult() {
         // Display victory message after the game loop
-        DrawSurface c = gui.getDrawSurface();
-        c.setColor(new Color(0, 0, 0)); // Black color for text
+        DrawSurface c = display.getDrawSurface();
+        c.setColor(Palette.TEXT); // Black color for text
         if (checkWin()) {
             c.drawText(200, 500, "You Won! Your score is " + (score.getValue() + 100), 32);
         } else if (remainingBalls.getValue() == 0) {
             c.drawText(200, 500, "Game Over. Your score is " + score.getValue(), 32);
         }
-        gui.show(c);
-        sleeper.sleepFor(3000); // Show the message for 3 seconds before closing
-        gui.close();
+        display.show(c);
+        display.sleepFor(3000); // Show the message for 3 seconds before closing
+        display.close();
+    }
+
+    /**
+     * Runs the game without drawing and without any frame pacing, as fast as the CPU allows,
+     * until it is over, its keyboard runs out of steps, or the given number of simulation steps
+     * has run. The steps are the same
+     * as in run(), so a headless game with the same input plays out exactly like a shown one.
+     *
+     * @param maxSteps the maximum number of simulation steps to run
+     * @return the number of simulation steps that were run
+     */
+    public long runHeadless(long maxSteps) {
+        double dt = (double) REFERENCE_RATE / this.simulationRate;
+        long steps = 0;
+        while (steps < maxSteps && !isOver() && this.keyboard.hasNextTick()) {
+            step(dt);
+            steps++;
+        }
+        return steps;
+    }
+
+    /**
+     * Runs a single simulation step: latches the keyboard, then lets every sprite move.
+     *
+     * @param dt the time of the step, in frames of 1/60 of a second
+     */
+    private void step(double dt) {
+        TickEvent event = new TickEvent();
+        event.begin();
+        if (this.profiling) {
+            profiledStep(dt);
+        } else {
+            latchInput();
+            this.sprites.notifyAllTimePassed(dt);
+            if (this.hitDispatcher != null) {
+                this.hitDispatcher.flush();
+            }
+        }
+        checkpoint();
+        endTick(event);
+    }
+
+    /**
+     * Saves a snapshot of the game if enough steps have passed since the last one, or else
+     * adds a change of the score to the journal.
+     */
+    private void checkpoint() {
+        if (this.checkpoints == null) {
+            return;
+        }
+        if (++this.stepsSinceSnapshot >= this.snapshotEvery) {
+            this.checkpoints.save(this);
+            this.stepsSinceSnapshot = 0;
+            this.journaledScore = this.score.getValue();
+        } else if (this.score.getValue() != this.journaledScore) {
+            this.journaledScore = this.score.getValue();
+            this.checkpoints.scoreChanged(this.journaledScore);
+        }
+    }
+
+    /**
+     * Returns the paddle, for the checkpoints.
+     *
+     * @return the paddle, or null before the arena is initialized
+     */
+    Paddle getPaddle() {
+        return this.paddle;
+    }
+
+    /**
+     * Returns the counter of the score, for the checkpoints.
+     *
+     * @return the counter of the score
+     */
+    Counter getScoreCounter() {
+        return this.score;
+    }
+
+    /**
+     * Returns the counter of the balls in play, for the checkpoints.
+     *
+     * @return the counter of the balls
+     */
+    Counter getBallCounter() {
+        return this.remainingBalls;
+    }
+
+    /**
+     * Returns the counter of the level blocks removed so far, for the checkpoints.
+     *
+     * @return the counter of the removed blocks
+     */
+    Counter getRemovedBlockCounter() {
+        return this.counterBlocks;
+    }
+
+    /**
+     * Returns the counter of the blocks the level was built with, for the checkpoints.
+     *
+     * @return the counter of the level blocks
+     */
+    Counter getLevelBlockCounter() {
+        return this.remainingBlocks;
+    }
+
+    /**
+     * Returns the number of blocks that have an index, alive or not.
+     *
+     * @return the number of indexed blocks
+     */
+    int getIndexedBlockCount() {
+        return this.blockCount;
+    }
+
+    /**
+     * Returns the block with the given index.
+     *
+     * @param index the index of the block, below getIndexedBlockCount()
+     * @return the block
+     */
+    Block getIndexedBlock(int index) {
+        return this.blockTable[index];
+    }
+
+    /**
+     * Returns the index of a sprite that is an indexed block.
+     *
+     * @param s the sprite
+     * @return the index of the block, or -1 if the sprite has no index
+     */
+    int indexOf(Sprite s) {
+        Integer index = this.blockIndexes.get(s);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns a word of the bitmap of live blocks, where bit i of word w is set if the block
+     * with index 64 * w + i is alive.
+     *
+     * @param w the index of the word, below getLiveWords()
+     * @return the word
+     */
+    long getLiveWord(int w) {
+        return this.liveBlocks[w];
+    }
+
+    /**
+     * Moves the keyboard to the next step, and records the keys held in it if recording.
+     */
+    private void latchInput() {
+        this.keyboard.nextTick();
+        if (this.recorder != null) {
+            this.recorder.step(this.simulationRate, this.hitDispatcher != null, this.maxBouncesPerTick,
+                    this.keyboard.isLeftPressed(), this.keyboard.isRightPressed());
+        }
+    }
+
+    /**
+     * Counts a finished step, and commits its event with the collision work done in it if the
+     * Flight Recorder wants it.
+     *
+     * @param event the event of the step
+     */
+    private void endTick(TickEvent event) {
+        CollisionCounters counters = this.environment.getCounters();
+        counters.recordTick();
+        long queries = counters.getQueries();
+        long tested = counters.getCollidablesTested();
+        long visited = counters.getNodesVisited();
+        long hits = counters.getHits();
+        if (event.shouldCommit()) {
+            event.balls = this.stats.balls();
+            event.queries = queries - this.lastQueries;
+            event.collidablesTested = tested - this.lastTested;
+            event.nodesVisited = visited - this.lastVisited;
+            event.hits = hits - this.lastHits;
+            event.commit();
+        }
+        this.lastQueries = queries;
+        this.lastTested = tested;
+        this.lastVisited = visited;
+        this.lastHits = hits;
+    }
+
+    /**
+     * Runs a single simulation step like step(), timing each of its phases.
+     *
+     * @param dt the time of the step, in frames of 1/60 of a second
+     */
+    private void profiledStep(double dt) {
+        long start = System.nanoTime();
+        latchInput();
+        long input = System.nanoTime();
+        this.profiler.record(FrameProfiler.Phase.INPUT, input - start);
+        this.sprites.notifyAllTimePassed(dt);
+        long update = System.nanoTime();
+        this.profiler.record(FrameProfiler.Phase.UPDATE, update - input);
+        if (this.hitDispatcher != null) {
+            this.hitDispatcher.flush();
+            this.profiler.addHit(System.nanoTime() - update);
+        }
+        this.profiler.endStep();
+    }
+
+    /**
+     * Records the drawing and showing times of a frame that was just shown.
+     *
+     * @param drawStart the time drawing the frame started
+     * @param showStart the time showing the frame started
+     */
+    private void recordFrame(long drawStart, long showStart) {
+        if (this.profiling) {
+            this.profiler.record(FrameProfiler.Phase.DRAW, showStart - drawStart);
+            this.profiler.record(FrameProfiler.Phase.SHOW, System.nanoTime() - showStart);
+        }
+    }
+
+    /**
+     * Draws the profiler's summaries under the top wall, next to the score.
+     *
+     * @param d the surface to draw on
+     */
+    private void drawOverlay(DrawSurface d) {
+        if (this.overlayFrames++ % OVERLAY_REFRESH == 0) {
+            FrameProfiler.Phase[] phases = FrameProfiler.Phase.values();
+            if (this.overlayLines.length != phases.length) {
+                this.overlayLines = new String[phases.length];
+            }
+            for (int i = 0; i < phases.length; i++) {
+                this.overlayLines[i] = this.profiler.summary(phases[i]);
+            }
+        }
+        d.setColor(Palette.TEXT);
+        for (int i = 0; i < this.overlayLines.length; i++) {
+            d.drawText(30, 35 + 12 * i, this.overlayLines[i], 11);
+        }
     }
 
     /**
@@ -193,6 +1230,16 @@ public class Game {
         this.environment.removeCollidable(c);
     }
 
+    /**
+     * Checks if a sprite is in the game.
+     *
+     * @param s the sprite
+     * @return true if the sprite is in the game and was not removed
+     */
+    public boolean containsSprite(Sprite s) {
+        return this.sprites.contains(s);
+    }
+
     /**
      * Removes a sprite from the sprite collection.
      *
@@ -200,6 +1247,10 @@ public class Game {
      */
     public void removeSprite(Sprite s) {
         this.sprites.removeSprite(s);
+        if (s.isStatic() && s instanceof Block) {
+            this.staticLayer.remove((Block) s);
+            setLive((Block) s, false);
+        }
     }
 
     /**
@@ -211,6 +1262,34 @@ public class Game {
         return this.environment.blockCount();
     }
 
+    /**
+     * Returns a read-only view of how many objects of each kind are in the game.
+     * Reading it never scans the game objects, so it is cheap to poll every frame.
+     *
+     * @return the live statistics of the game
+     */
+    public WorldStats getStats() {
+        return this.stats;
+    }
+
+    /**
+     * Returns the current score of the player.
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return this.score.getValue();
+    }
+
+    /**
+     * Returns the number of balls still in play.
+     *
+     * @return the number of remaining balls
+     */
+    public int getRemainingBalls() {
+        return this.remainingBalls.getValue();
+    }
+
     /**
      * Check if the players wom.
      *
@@ -0,0 +1,47 @@
+package Gameps;
+
+import biuoop.DrawSurface;
+import biuoop.KeyboardSensor;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * The GameDisplay interface is what the game needs from a window: surfaces to draw frames on,
+ * a way to show them, and the keyboard. It lets the game run either in a biuoop window or
+ * headless, on machines with no display at all.
+ */
+public interface GameDisplay {
+
+    /**
+     * Returns a surface to draw the next frame on.
+     *
+     * @return a draw surface
+     */
+    DrawSurface getDrawSurface();
+
+    /**
+     * Shows a frame that was drawn on a surface from getDrawSurface().
+     *
+     * @param d the surface to show
+     */
+    void show(DrawSurface d);
+
+    /**
+     * Returns the keyboard of the display.
+     *
+     * @return the keyboard sensor
+     */
+    KeyboardSensor getKeyboardSensor();
+
+    /**
+     * Waits for the given time, for example while a message is shown.
+     *
+     * @param milliseconds the time to wait
+     */
+    void sleepFor(long milliseconds);
+
+    /**
+     * Closes the display.
+     */
+    void close();
+}
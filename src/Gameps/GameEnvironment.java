@@ -1,26 +1,62 @@
 package Gameps;
 
 import Geometry.Line;
-import Geometry.Point;
-import Geometry.Rectangle;
 
-import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Author: Ofek Mazor
  * ID: 328285705
  * The Gameps.GameEnvironment class represents the collection of collidable objects
  * within a game environment.
+ * Collidables are registered either as static, like walls and blocks, or as dynamic, like
+ * the paddle. Static collidables are kept in a Gameps.CollisionIndex, which by default is a
+ * uniform grid covering the game screen, and which is rarely changed. Dynamic collidables
+ * move often, so they are kept in a small separate list that is scanned on every query, and
+ * moving them never touches the index.
+ * The static part of a query only reads the world, so many queries may be prepared in
+ * parallel with prepareClosestCollision(), as long as nothing is added, moved or removed
+ * while they run.
  */
 public class GameEnvironment {
-    private List<Collidable> gameObjects;
+    private static final double DEFAULT_WIDTH = 800;
+    private static final double DEFAULT_HEIGHT = 600;
+    private static final double DEFAULT_CELL_SIZE = 50;
+    private CollisionIndex index;
+    private CollisionIndex dynamicIndex;
+    private Map<Collidable, Long> staticOrders;
+    private Map<Collidable, Long> dynamicOrders;
+    private PopulationCounts population;
+    private long nextOrder;
+    // Bumped whenever a static collidable is added or moved. Removals are not counted, since
+    // removing a collidable only changes a query whose closest hit was that collidable.
+    private long staticVersion;
+    private FrameProfiler profiler;
+    private CollisionCounters counters;
+    // Every thread gets its own stats, since queries may be prepared in parallel
+    private final ThreadLocal<QueryStats> queryStats = ThreadLocal.withInitial(QueryStats::new);
 
     /**
      * Constructs a new Gameps.GameEnvironment with an empty list of collidable objects.
      */
     public GameEnvironment() {
-        this.gameObjects = new ArrayList<>();
+        this(new UniformGridIndex(0, 0, DEFAULT_WIDTH, DEFAULT_HEIGHT, DEFAULT_CELL_SIZE));
+    }
+
+    /**
+     * Constructs a new Gameps.GameEnvironment that answers collision queries with the given index.
+     *
+     * @param index an empty collision index
+     */
+    public GameEnvironment(CollisionIndex index) {
+        this.index = index;
+        this.dynamicIndex = new LinearScanIndex();
+        this.staticOrders = new IdentityHashMap<>();
+        this.dynamicOrders = new IdentityHashMap<>();
+        this.population = new PopulationCounts();
+        this.counters = new CollisionCounters();
     }
 
     /**
@@ -29,25 +65,87 @@ public class GameEnvironment {
      * @param gameObjects the initial list of collidable objects to add
      */
     public GameEnvironment(List<Collidable> gameObjects) {
-        this.gameObjects = new ArrayList<>(gameObjects);
+        this();
+        for (Collidable c : gameObjects) {
+            addCollidable(c);
+        }
     }
 
     /**
-     * Adds a collidable object to the game environment.
+     * Adds a static collidable object, one that rarely or never moves, to the game environment.
      *
      * @param c the collidable object to add
      */
     public void addCollidable(Collidable c) {
-        this.gameObjects.add(c);
+        this.population.added(c);
+        this.staticOrders.put(c, this.nextOrder);
+        this.index.add(c, this.nextOrder++);
+        this.staticVersion++;
+    }
+
+    /**
+     * Adds many static collidable objects at once, in the order of the array, letting the
+     * index build its structure for the whole batch in a single pass.
+     *
+     * @param collidables the collidable objects to add
+     * @param count       the number of objects to add, from the start of the array
+     */
+    public void addCollidables(Collidable[] collidables, int count) {
+        if (count > this.staticOrders.size()) {
+            // Grow the map once for the whole batch, rather than doubling it all the way up
+            Map<Collidable, Long> grown = new IdentityHashMap<>(this.staticOrders.size() + count);
+            grown.putAll(this.staticOrders);
+            this.staticOrders = grown;
+        }
+        for (int i = 0; i < count; i++) {
+            this.population.added(collidables[i]);
+            this.staticOrders.put(collidables[i], this.nextOrder + i);
+        }
+        this.index.addAll(collidables, count, this.nextOrder);
+        this.nextOrder += count;
+        this.staticVersion++;
+    }
+
+    /**
+     * Adds a dynamic collidable object, one that moves often, to the game environment.
+     *
+     * @param c the collidable object to add
+     */
+    public void addDynamicCollidable(Collidable c) {
+        this.population.added(c);
+        this.dynamicOrders.put(c, this.nextOrder);
+        this.dynamicIndex.add(c, this.nextOrder++);
     }
 
     /**
      * Removes a collidable object from the game environment.
+     * The removal takes effect at once, so no later query can hit the collidable, and it takes
+     * constant time apart from the index's own bookkeeping.
      *
      * @param c the collidable object to remove
      */
     public void removeCollidable(Collidable c) {
-        this.gameObjects.remove(c);
+        if (this.staticOrders.remove(c) != null) {
+            this.population.removed(c);
+            this.index.remove(c);
+        } else if (this.dynamicOrders.remove(c) != null) {
+            this.population.removed(c);
+            this.dynamicIndex.remove(c);
+        }
+    }
+
+    /**
+     * Notifies the game environment that the collision rectangle of a collidable object
+     * has moved, so the collision index can be brought up to date.
+     * Dynamic collidables are not indexed, so nothing needs to be done for them.
+     *
+     * @param c the collidable object that moved
+     */
+    public void updateCollidable(Collidable c) {
+        if (this.staticOrders.containsKey(c)) {
+            this.index.update(c);
+            this.staticVersion++;
+        }
     }
 
     /**
@@ -56,14 +154,36 @@ public class GameEnvironment {
      * @return the number of blocks in the game environment
      */
     public int blockCount() {
+        return this.population.count(ObjectType.BLOCK);
+    }
 
-        int count = 0;
-        for (Collidable c : this.gameObjects) {
-            if (c.isBlock()) {
-                count++;
-            }
-        }
-        return count;
+    /**
+     * Returns a read-only view of the live count of each kind of collidable in the game environment.
+     *
+     * @return the population of the collidables
+     */
+    public Population getPopulation() {
+        return this.population;
+    }
+
+    /**
+     * Sets the profiler that the time of every collision query is added to, or null to stop
+     * timing queries. Queries prepared ahead of time with prepareClosestCollision() run in
+     * parallel and are not timed, only the part of them that is finished on the game thread.
+     *
+     * @param profiler the profiler, or null
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Returns the profiler that collision queries and hits are timed with.
+     *
+     * @return the profiler, or null if nothing is timed
+     */
+    public FrameProfiler getProfiler() {
+        return this.profiler;
     }
 
     /**
@@ -74,27 +194,147 @@ public class GameEnvironment {
      * @return the closest collision information, or null if no collision occurs
      */
     public CollisionInfo getClosestCollision(Line trajectory) {
-        Point closestCollisionPoint = null;
-        Collidable closestCollidable = null;
-        double minDistance = Double.POSITIVE_INFINITY;
-
-        for (Collidable collidable : gameObjects) {
-            Rectangle rect = collidable.getCollisionRectangle();
-            List<Point> collisionPoints = rect.getCollisionPoint(trajectory);
-
-            for (Point point : collisionPoints) {
-                double distance = trajectory.start().distance(point);
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    closestCollisionPoint = point;
-                    closestCollidable = collidable;
-                }
-            }
+        return getClosestCollision(trajectory, 0);
+    }
+
+    /**
+     * Finds the closest collision for a circle, such as a ball, whose center moves along a
+     * trajectory. The returned information includes the time of impact, so a fast circle is
+     * handled in a single query and never passes through a thin collidable.
+     *
+     * @param trajectory the line representing the trajectory of the circle's center
+     * @param radius     the radius of the circle
+     * @return the closest collision information, or null if no collision occurs
+     */
+    public CollisionInfo getClosestCollision(Line trajectory, double radius) {
+        if (this.profiler == null) {
+            return findClosest(trajectory, radius);
+        }
+        long start = System.nanoTime();
+        CollisionInfo info = findClosest(trajectory, radius);
+        this.profiler.addCollision(System.nanoTime() - start);
+        return info;
+    }
+
+    /**
+     * Runs a whole query, counting its work and recording it for the Flight Recorder.
+     *
+     * @param trajectory the line representing the trajectory of the circle's center
+     * @param radius     the radius of the circle, or 0 for a point
+     * @return the closest collision information, or null if no collision occurs
+     */
+    private CollisionInfo findClosest(Line trajectory, double radius) {
+        CollisionQueryEvent event = new CollisionQueryEvent();
+        event.begin();
+        QueryStats stats = this.queryStats.get();
+        stats.reset();
+        CollisionInfo info = withDynamic(this.index.getClosestCollision(trajectory, radius, stats),
+                trajectory, radius, stats);
+        endQuery(event, stats, radius, info);
+        return info;
+    }
+
+    /**
+     * Counts the work of a finished query, and commits its event if the Flight Recorder wants it.
+     *
+     * @param event  the event of the query
+     * @param stats  the work of the query
+     * @param radius the radius of the query
+     * @param info   the result of the query
+     */
+    private void endQuery(CollisionQueryEvent event, QueryStats stats, double radius, CollisionInfo info) {
+        this.counters.recordQuery(stats);
+        if (event.shouldCommit()) {
+            event.collidablesTested = stats.getCollidablesTested();
+            event.nodesVisited = stats.getNodesVisited();
+            event.radius = radius;
+            event.hit = info != null;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the always-on counters of the work of the collision queries.
+     *
+     * @return the counters
+     */
+    public CollisionCounters getCounters() {
+        return this.counters;
+    }
+
+    /**
+     * Runs the static part of a closest-collision query ahead of time. The static collidables
+     * are only read, so this may be called from several threads at once, as long as the game
+     * environment is not modified meanwhile.
+     *
+     * @param trajectory the line representing the trajectory of the circle's center
+     * @param radius     the radius of the circle, or 0 for a point
+     * @return the prepared query, to be finished with getClosestCollision(PreparedCollision)
+     */
+    public PreparedCollision prepareClosestCollision(Line trajectory, double radius) {
+        QueryStats stats = this.queryStats.get();
+        stats.reset();
+        CollisionInfo staticHit = this.index.getClosestCollision(trajectory, radius, stats);
+        return new PreparedCollision(trajectory, radius, staticHit, this.staticVersion,
+                stats.getCollidablesTested(), stats.getNodesVisited());
+    }
+
+    /**
+     * Finishes a prepared query. The result is exactly what getClosestCollision(Line, double)
+     * would return now for the same trajectory and radius: the static part found ahead of time
+     * is reused only if no static collidable was added or moved since, and its closest hit was
+     * not removed. Otherwise the query runs again from scratch.
+     *
+     * @param prepared the prepared query
+     * @return the closest collision information, or null if no collision occurs
+     */
+    public CollisionInfo getClosestCollision(PreparedCollision prepared) {
+        CollisionInfo staticHit = prepared.staticHit();
+        if (prepared.staticVersion() != this.staticVersion
+                || (staticHit != null && !this.staticOrders.containsKey(staticHit.collisionObject()))) {
+            return getClosestCollision(prepared.trajectory(), prepared.radius());
+        }
+        long start = this.profiler == null ? 0 : System.nanoTime();
+        CollisionQueryEvent event = new CollisionQueryEvent();
+        event.begin();
+        QueryStats stats = this.queryStats.get();
+        stats.reset();
+        // The query counts once, with the work done ahead of time included
+        stats.add(prepared.collidablesTested(), prepared.nodesVisited());
+        CollisionInfo info = withDynamic(staticHit, prepared.trajectory(), prepared.radius(), stats);
+        endQuery(event, stats, prepared.radius(), info);
+        if (this.profiler != null) {
+            this.profiler.addCollision(System.nanoTime() - start);
         }
+        return info;
+    }
 
-        if (closestCollisionPoint != null) {
-            return new CollisionInfo(closestCollisionPoint, closestCollidable);
+    /**
+     * Completes a query by testing the dynamic collidables and keeping the closer hit.
+     *
+     * @param staticHit  the closest static collision, or null if there is none
+     * @param trajectory the line representing the trajectory of the circle's center
+     * @param radius     the radius of the circle
+     * @param stats      where to add the work of the dynamic part
+     * @return the closest collision information, or null if no collision occurs
+     */
+    private CollisionInfo withDynamic(CollisionInfo staticHit, Line trajectory, double radius, QueryStats stats) {
+        if (this.dynamicOrders.isEmpty()) {
+            return staticHit;
+        }
+        CollisionInfo dynamicHit = this.dynamicIndex.getClosestCollision(trajectory, radius, stats);
+        if (staticHit == null) {
+            return dynamicHit;
+        }
+        if (dynamicHit == null) {
+            return staticHit;
+        }
+        // Merge by time of impact, breaking ties by insertion order like a single scan would
+        if (dynamicHit.timeOfImpact() != staticHit.timeOfImpact()) {
+            return dynamicHit.timeOfImpact() < staticHit.timeOfImpact() ? dynamicHit : staticHit;
         }
-        return null; // No collision occurred
+        long staticOrder = this.staticOrders.get(staticHit.collisionObject());
+        long dynamicOrder = this.dynamicOrders.get(dynamicHit.collisionObject());
+        return dynamicOrder < staticOrder ? dynamicHit : staticHit;
     }
 }
@@ -0,0 +1,53 @@
+package Gameps;
+
+import biuoop.DrawSurface;
+import biuoop.GUI;
+import biuoop.KeyboardSensor;
+import biuoop.Sleeper;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * GuiDisplay shows the game in a biuoop window.
+ */
+public class GuiDisplay implements GameDisplay {
+    private GUI gui;
+    private Sleeper sleeper;
+
+    /**
+     * Constructs a GuiDisplay that opens a new window.
+     *
+     * @param title  the title of the window
+     * @param width  the width of the window
+     * @param height the height of the window
+     */
+    public GuiDisplay(String title, int width, int height) {
+        this.gui = new GUI(title, width, height);
+        this.sleeper = new Sleeper();
+    }
+
+    @Override
+    public DrawSurface getDrawSurface() {
+        return this.gui.getDrawSurface();
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        this.gui.show(d);
+    }
+
+    @Override
+    public KeyboardSensor getKeyboardSensor() {
+        return this.gui.getKeyboardSensor();
+    }
+
+    @Override
+    public void sleepFor(long milliseconds) {
+        this.sleeper.sleepFor(milliseconds);
+    }
+
+    @Override
+    public void close() {
+        this.gui.close();
+    }
+}
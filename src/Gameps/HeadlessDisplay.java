@@ -0,0 +1,120 @@
+package Gameps;
+
+import biuoop.DrawSurface;
+import biuoop.KeyboardSensor;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * HeadlessDisplay stands in for a window on machines with no display. Drawing does nothing,
+ * no key is ever pressed, and waiting returns at once.
+ */
+public class HeadlessDisplay implements GameDisplay {
+    private final int width;
+    private final int height;
+    private final DrawSurface surface;
+
+    /**
+     * Constructs a HeadlessDisplay of the given size.
+     *
+     * @param width  the width reported by the draw surfaces
+     * @param height the height reported by the draw surfaces
+     */
+    public HeadlessDisplay(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.surface = new NullDrawSurface();
+    }
+
+    @Override
+    public DrawSurface getDrawSurface() {
+        return this.surface;
+    }
+
+    @Override
+    public void show(DrawSurface d) {
+        // Nothing to show
+    }
+
+    @Override
+    public KeyboardSensor getKeyboardSensor() {
+        return key -> false;
+    }
+
+    @Override
+    public void sleepFor(long milliseconds) {
+        // Nobody is watching, so there is nothing to wait for
+    }
+
+    @Override
+    public void close() {
+        // Nothing to close
+    }
+
+    /**
+     * A draw surface that ignores everything drawn on it.
+     */
+    private final class NullDrawSurface implements DrawSurface {
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public void setColor(Color color) {
+        }
+
+        @Override
+        public void drawLine(int x1, int y1, int x2, int y2) {
+        }
+
+        @Override
+        public void drawOval(int x, int y, int width, int height) {
+        }
+
+        @Override
+        public void fillOval(int x, int y, int width, int height) {
+        }
+
+        @Override
+        public void drawRectangle(int x, int y, int width, int height) {
+        }
+
+        @Override
+        public void fillRectangle(int x, int y, int width, int height) {
+        }
+
+        @Override
+        public void drawImage(int x, int y, Image image) {
+        }
+
+        @Override
+        public void drawCircle(int x, int y, int r) {
+        }
+
+        @Override
+        public void fillCircle(int x, int y, int r) {
+        }
+
+        @Override
+        public void drawText(int x, int y, String text, int fontSize) {
+        }
+
+        @Override
+        public void drawPolygon(Polygon polygon) {
+        }
+
+        @Override
+        public void fillPolygon(Polygon polygon) {
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package Gameps;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * A Flight Recorder event for dispatching hit events to hit listeners, either a single hit
+ * at the moment it happens or the whole batch of a step.
+ */
+@Name("arkanoid.HitDispatch")
+@Label("Hit Dispatch")
+@Category("Arkanoid")
+@Description("Hit events dispatched to hit listeners")
+public class HitDispatchEvent extends Event {
+    @Label("Hits")
+    private int hits;
+
+    @Label("Batched")
+    private boolean batched;
+
+    /**
+     * Sets what was dispatched.
+     *
+     * @param dispatchedHits the number of hit events dispatched
+     * @param wasBatched     true if the events were batched until the end of the step
+     */
+    public void set(int dispatchedHits, boolean wasBatched) {
+        this.hits = dispatchedHits;
+        this.batched = wasBatched;
+    }
+}
@@ -0,0 +1,96 @@
+package Gameps;
+
+import sprites.Ball;
+import sprites.Block;
+
+import java.util.Arrays;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * HitDispatcher collects the hit events of a step in a buffer that is reused from step to
+ * step, and dispatches them all at once when the step is over, so no hit listener runs in
+ * the middle of a ball's movement. Events are dispatched in the order they were recorded.
+ * A block stays solid until the step is over, so two balls may hit a block that the first
+ * hit removes. Once an event has taken a block out of the game, its later events reach no
+ * listener, just as without batching the later balls would have found the block gone.
+ */
+public class HitDispatcher {
+    private final Game game;
+    private Block[] blocks;
+    private Ball[] hitters;
+    private int size;
+    private long dispatched;
+
+    /**
+     * Constructs an empty HitDispatcher for a game.
+     *
+     * @param game the game whose hit events are collected
+     */
+    public HitDispatcher(Game game) {
+        this.game = game;
+        this.blocks = new Block[64];
+        this.hitters = new Ball[64];
+    }
+
+    /**
+     * Records a hit event, to be dispatched by the next flush().
+     *
+     * @param beingHit the block that was hit
+     * @param hitter   the ball that hit it
+     */
+    public void record(Block beingHit, Ball hitter) {
+        if (this.size == this.blocks.length) {
+            this.blocks = Arrays.copyOf(this.blocks, this.size * 2);
+            this.hitters = Arrays.copyOf(this.hitters, this.size * 2);
+        }
+        this.blocks[this.size] = beingHit;
+        this.hitters[this.size] = hitter;
+        this.size++;
+    }
+
+    /**
+     * Dispatches every recorded event to the listeners of its block, in the order the events
+     * were recorded, and empties the buffer. Events of blocks no longer in the game are dropped.
+     */
+    public void flush() {
+        if (this.size == 0) {
+            return;
+        }
+        HitDispatchEvent event = new HitDispatchEvent();
+        event.begin();
+        long before = this.dispatched;
+        // Listeners may record new events, which are dispatched in the same flush
+        for (int i = 0; i < this.size; i++) {
+            if (this.game.containsSprite(this.blocks[i])) {
+                this.blocks[i].dispatchHit(this.hitters[i]);
+                this.dispatched++;
+            }
+            this.blocks[i] = null;
+            this.hitters[i] = null;
+        }
+        if (event.shouldCommit()) {
+            event.set((int) (this.dispatched - before), true);
+            event.commit();
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of events waiting for the next flush().
+     *
+     * @return the number of pending events
+     */
+    public int pending() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of events dispatched so far.
+     *
+     * @return the number of dispatched events
+     */
+    public long getDispatchedCount() {
+        return this.dispatched;
+    }
+}
@@ -0,0 +1,73 @@
+package Gameps;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * InputLog holds the binary format of an input recording, shared by the recorder and the replay.
+ * A recording starts with MAGIC and VERSION, followed by the records that built the game, in
+ * the order they were made: a ball, the arena, or a level block, followed by its listener flags
+ * if they are not those of an ordinary level block (FLAGGED_BLOCK). The KEYS record then gives the
+ * simulation rate and the settings that change how the game plays: a byte of flags, where
+ * BATCHED_HITS means hit events were batched, and the most bounces a ball resolves in a step as
+ * a variable-length number. Every record after it is a run of steps with the same keys held, encoded
+ * as a variable-length number (count &lt;&lt; 2 | keys), where bit 0 of keys is LEFT and bit 1 is
+ * RIGHT. A zero ends the recording. Holding a key for a second at 60 steps per second is a
+ * single run of one or two bytes. Recordings of VERSION 1 have no settings in their KEYS record,
+ * and replay with the defaults.
+ */
+final class InputLog {
+    static final int MAGIC = 0x41524B52;
+    static final int VERSION = 2;
+    static final int BALL = 'B';
+    static final int ARENA = 'A';
+    static final int BLOCK = 'L';
+    static final int FLAGGED_BLOCK = 'F';
+    static final int KEYS = 'K';
+    static final int LEFT = 1;
+    static final int RIGHT = 2;
+    static final int BATCHED_HITS = 1;
+
+    /**
+     * No instances, only the format.
+     */
+    private InputLog() {
+    }
+
+    /**
+     * Writes a non-negative number in as few bytes as it needs, seven bits per byte.
+     *
+     * @param out   the output to write to
+     * @param value the number
+     * @throws IOException if writing fails
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads a number written with writeVarLong.
+     *
+     * @param in the input to read from
+     * @return the number
+     * @throws IOException if reading fails or the number is malformed
+     */
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed number in input recording");
+    }
+}
@@ -0,0 +1,159 @@
+package Gameps;
+
+import Geometry.Rectangle;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * InputRecorder streams how a game was built and the keys held in every step of it, in the
+ * format of Gameps.InputLog. Steps with the same keys held are written as a single run when
+ * the keys change, so a recording grows by a few bytes per second of play. The game writes to
+ * its recorder itself, see Game.startRecording().
+ */
+class InputRecorder {
+    private DataOutputStream out;
+    private boolean keysStarted;
+    private int keys;
+    private long run;
+
+    /**
+     * Constructs an InputRecorder and writes the start of the recording.
+     *
+     * @param out the stream to write the recording to, which the caller keeps and closes
+     */
+    InputRecorder(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        try {
+            this.out.writeInt(InputLog.MAGIC);
+            this.out.writeByte(InputLog.VERSION);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records a ball added to the game.
+     *
+     * @param x        the x-coordinate of the center of the ball
+     * @param y        the y-coordinate of the center of the ball
+     * @param radius   the radius of the ball
+     * @param color    the color of the ball
+     * @param velocity the velocity of the ball
+     */
+    void ball(double x, double y, int radius, Color color, Velocity velocity) {
+        try {
+            this.out.writeByte(InputLog.BALL);
+            this.out.writeDouble(x);
+            this.out.writeDouble(y);
+            this.out.writeInt(radius);
+            this.out.writeInt(color.getRGB());
+            this.out.writeDouble(velocity.getDx());
+            this.out.writeDouble(velocity.getDy());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records that the arena was initialized.
+     */
+    void arena() {
+        try {
+            this.out.writeByte(InputLog.ARENA);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records a level block added to the game. An ordinary level block is recorded without
+     * its flags.
+     *
+     * @param rectangle the rectangle of the block
+     * @param color     the color of the block
+     * @param flags     the listener flags of the block, from LevelFile
+     */
+    void block(Rectangle rectangle, Color color, int flags) {
+        try {
+            this.out.writeByte(flags == LevelFile.LEVEL_BLOCK ? InputLog.BLOCK : InputLog.FLAGGED_BLOCK);
+            this.out.writeDouble(rectangle.getMinx());
+            this.out.writeDouble(rectangle.getMiny());
+            this.out.writeDouble(rectangle.getWidth());
+            this.out.writeDouble(rectangle.getHeight());
+            this.out.writeInt(color.getRGB());
+            if (flags != LevelFile.LEVEL_BLOCK) {
+                this.out.writeByte(flags);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records the keys held in a step. The simulation rate and the settings that change how
+     * the game plays are written with the first step, since they hold for every step after it.
+     *
+     * @param simulationRate    the simulation steps per second
+     * @param batchedHits       true if hit events are batched
+     * @param maxBouncesPerTick the most collisions a ball resolves in a step
+     * @param left              true if the LEFT key is held
+     * @param right             true if the RIGHT key is held
+     */
+    void step(int simulationRate, boolean batchedHits, int maxBouncesPerTick, boolean left, boolean right) {
+        int held = (left ? InputLog.LEFT : 0) | (right ? InputLog.RIGHT : 0);
+        try {
+            if (!this.keysStarted) {
+                this.out.writeByte(InputLog.KEYS);
+                this.out.writeInt(simulationRate);
+                this.out.writeByte(batchedHits ? InputLog.BATCHED_HITS : 0);
+                InputLog.writeVarLong(this.out, maxBouncesPerTick);
+                this.keysStarted = true;
+            } else if (held != this.keys) {
+                writeRun();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.keys = held;
+        this.run++;
+    }
+
+    /**
+     * Writes the current run of steps and starts a new one.
+     *
+     * @throws IOException if writing fails
+     */
+    private void writeRun() throws IOException {
+        InputLog.writeVarLong(this.out, this.run << 2 | this.keys);
+        this.run = 0;
+    }
+
+    /**
+     * Writes the last run and the end of the recording, and flushes it to the stream. Nothing
+     * should be recorded after this.
+     */
+    void finish() {
+        try {
+            if (!this.keysStarted) {
+                // No step ran, so the rate and the settings are never needed
+                this.out.writeByte(InputLog.KEYS);
+                this.out.writeInt(0);
+                this.out.writeByte(0);
+                InputLog.writeVarLong(this.out, 0);
+            } else if (this.run > 0) {
+                writeRun();
+            }
+            InputLog.writeVarLong(this.out, 0);
+            this.out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package Gameps;
+
+import Geometry.Point;
+import Geometry.Rectangle;
+import sprites.Block;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * LevelFile reads and writes the blocks of a level in a compact binary format, so that a level
+ * of a million blocks is loaded from a file instead of being built again from code.
+ * A level file starts with MAGIC, VERSION, the number of colors in its palette and the number
+ * of blocks, followed by the palette as ARGB ints, then a fixed record of RECORD bytes per
+ * block: the x, y, width and height of its rectangle as floats, the index of its color in the
+ * palette as an unsigned short, its listener flags as a byte, and a byte of padding. Everything
+ * is little-endian. Coordinates are kept as floats, which hold every whole, half and quarter
+ * pixel on the screen exactly.
+ * The loader maps the file into memory and reads it in a single pass, sharing one Color per
+ * palette entry between all blocks of that color, then hands the blocks to the game in one
+ * batch, so the collision index is built once for the whole level.
+ */
+public final class LevelFile {
+    /**
+     * The flag of a block that is removed when a ball hits it, and counts towards clearing the level.
+     */
+    public static final int REMOVABLE = 1;
+    /**
+     * The flag of a block that adds to the score when a ball hits it.
+     */
+    public static final int SCORING = 2;
+    /**
+     * The flags of an ordinary level block, as added by Game.addLevelBlock().
+     */
+    public static final int LEVEL_BLOCK = REMOVABLE | SCORING;
+    private static final int MAGIC = 0x41524B4C;
+    private static final int VERSION = 1;
+    // Magic, version, palette size and block count
+    private static final int HEADER = 16;
+    private static final int RECORD = 20;
+    private static final int MAX_COLORS = 1 << 16;
+
+    /**
+     * No instances, only the format.
+     */
+    private LevelFile() {
+    }
+
+    /**
+     * Loads the blocks of a level file into a game whose arena is initialized.
+     *
+     * @param file the level file
+     * @param game the game to load the blocks into
+     * @return the number of blocks loaded
+     * @throws IOException if the file cannot be read or is not a valid level file
+     */
+    static int load(Path file, Game game) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER) {
+                throw new IOException("not a level file: " + file);
+            }
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        if (in.getInt(0) != MAGIC) {
+            throw new IOException("not a level file: " + file);
+        }
+        if (in.getInt(4) != VERSION) {
+            throw new IOException("unsupported level file version " + in.getInt(4));
+        }
+        int colors = in.getInt(8);
+        int count = in.getInt(12);
+        if (colors < 0 || colors > MAX_COLORS || count < 0
+                || in.capacity() != HEADER + 4L * colors + (long) RECORD * count) {
+            throw new IOException("truncated level file: " + file);
+        }
+        Color[] palette = new Color[colors];
+        for (int i = 0; i < colors; i++) {
+            palette[i] = new Color(in.getInt(HEADER + 4 * i), true);
+        }
+
+        Block[] blocks = new Block[count];
+        byte[] flags = new byte[count];
+        int at = HEADER + 4 * colors;
+        for (int i = 0; i < count; i++, at += RECORD) {
+            Point upperLeft = new Point(in.getFloat(at), in.getFloat(at + 4));
+            Rectangle rectangle = new Rectangle(upperLeft, in.getFloat(at + 8), in.getFloat(at + 12));
+            int color = Short.toUnsignedInt(in.getShort(at + 16));
+            flags[i] = in.get(at + 18);
+            if (color >= colors || (flags[i] & ~LEVEL_BLOCK) != 0) {
+                throw new IOException("bad block " + i + " in level file: " + file);
+            }
+            blocks[i] = new Block(rectangle, palette[color]);
+        }
+        game.addLevelBlocks(blocks, flags, count);
+        return count;
+    }
+
+    /**
+     * Writes the blocks of a level to a file, replacing it if it exists.
+     *
+     * @param file   the level file
+     * @param blocks the blocks of the level
+     * @param flags  the listener flags of every block
+     * @param count  the number of blocks, from the start of the arrays
+     * @throws IOException if the file cannot be written, or the level has too many colors
+     */
+    static void write(Path file, Block[] blocks, byte[] flags, int count) throws IOException {
+        Map<Integer, Integer> indexes = new HashMap<>();
+        int[] palette = new int[Math.min(count, MAX_COLORS)];
+        short[] colorOf = new short[count];
+        for (int i = 0; i < count; i++) {
+            int rgb = blocks[i].getColor().getRGB();
+            Integer index = indexes.get(rgb);
+            if (index == null) {
+                if (indexes.size() == MAX_COLORS) {
+                    throw new IOException("a level file holds at most " + MAX_COLORS + " colors");
+                }
+                index = indexes.size();
+                indexes.put(rgb, index);
+                palette[index] = rgb;
+            }
+            colorOf[i] = (short) (int) index;
+        }
+
+        long size = HEADER + 4L * indexes.size() + (long) RECORD * count;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(indexes.size());
+            out.putInt(count);
+            for (int i = 0; i < indexes.size(); i++) {
+                out.putInt(palette[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                Rectangle rectangle = blocks[i].getCollisionRectangle();
+                out.putFloat((float) rectangle.getMinx());
+                out.putFloat((float) rectangle.getMiny());
+                out.putFloat((float) rectangle.getWidth());
+                out.putFloat((float) rectangle.getHeight());
+                out.putShort(colorOf[i]);
+                out.put(flags[i]);
+                out.put((byte) 0);
+            }
+            out.force();
+        }
+    }
+}
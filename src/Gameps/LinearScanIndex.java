@@ -0,0 +1,69 @@
+package Gameps;
+
+import Geometry.Line;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * LinearScanIndex is the simplest collision index: it tests every collidable on every query.
+ * It is the reference that every other index must agree with.
+ * Every collidable remembers its position in the list, so it is removed in constant time by
+ * moving the last collidable into its place. Ties are broken by insertion order, not by
+ * list position, so the order of the list never changes a result.
+ */
+public class LinearScanIndex implements CollisionIndex {
+    private List<Collidable> collidables;
+    private List<Long> orders;
+    private Map<Collidable, Integer> positions;
+
+    /**
+     * Constructs an empty LinearScanIndex.
+     */
+    public LinearScanIndex() {
+        this.collidables = new ArrayList<>();
+        this.orders = new ArrayList<>();
+        this.positions = new IdentityHashMap<>();
+    }
+
+    @Override
+    public void add(Collidable c, long order) {
+        this.positions.put(c, this.collidables.size());
+        this.collidables.add(c);
+        this.orders.add(order);
+    }
+
+    @Override
+    public void remove(Collidable c) {
+        Integer index = this.positions.remove(c);
+        if (index == null) {
+            return;
+        }
+        int last = this.collidables.size() - 1;
+        Collidable moved = this.collidables.remove(last);
+        long movedOrder = this.orders.remove(last);
+        if (index != last) {
+            this.collidables.set(index, moved);
+            this.orders.set(index, movedOrder);
+            this.positions.put(moved, index);
+        }
+    }
+
+    @Override
+    public void update(Collidable c) {
+        // Nothing is cached, so the next query already sees the new position
+    }
+
+    @Override
+    public CollisionInfo getClosestCollision(Line trajectory, double radius, QueryStats stats) {
+        ClosestHit hit = new ClosestHit(trajectory, radius, stats);
+        for (int i = 0; i < this.collidables.size(); i++) {
+            hit.offer(this.collidables.get(i), this.orders.get(i));
+        }
+        return hit.toCollisionInfo();
+    }
+}
@@ -0,0 +1,26 @@
+package Gameps;
+
+import biuoop.KeyboardSensor;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * LiveKeyboard samples a real keyboard once per simulation step.
+ */
+public class LiveKeyboard extends TickKeyboard {
+    private KeyboardSensor keyboard;
+
+    /**
+     * Constructs a LiveKeyboard that samples the given keyboard.
+     *
+     * @param keyboard the keyboard to sample
+     */
+    public LiveKeyboard(KeyboardSensor keyboard) {
+        this.keyboard = keyboard;
+    }
+
+    @Override
+    public void nextTick() {
+        setKeys(this.keyboard.isPressed(LEFT_KEY), this.keyboard.isPressed(RIGHT_KEY));
+    }
+}
@@ -0,0 +1,36 @@
+package Gameps;
+
+import sprites.Ball;
+import sprites.Paddle;
+import sprites.Wall;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * The ObjectType enum names the kinds of objects the game keeps count of.
+ */
+public enum ObjectType {
+    BLOCK, WALL, BALL, PADDLE, OTHER;
+
+    /**
+     * Returns the kind of the given game object.
+     *
+     * @param o a sprite or a collidable
+     * @return the kind of the object
+     */
+    public static ObjectType of(Object o) {
+        if (o instanceof Ball) {
+            return BALL;
+        }
+        if (o instanceof Paddle) {
+            return PADDLE;
+        }
+        if (o instanceof Wall) {
+            return WALL;
+        }
+        if (o instanceof Collidable && ((Collidable) o).isBlock()) {
+            return BLOCK;
+        }
+        return OTHER;
+    }
+}
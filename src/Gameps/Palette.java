@@ -0,0 +1,62 @@
+package Gameps;
+
+import java.awt.Color;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * Palette holds the colors of the game, made once and shared, so drawing a frame never
+ * allocates a color.
+ */
+public final class Palette {
+    /**
+     * The light blue background.
+     */
+    public static final Color BACKGROUND = new Color(173, 216, 230);
+    /**
+     * The color of text, such as the score.
+     */
+    public static final Color TEXT = Color.BLACK;
+    /**
+     * The color of block outlines.
+     */
+    public static final Color OUTLINE = Color.BLACK;
+    /**
+     * The color of the walls.
+     */
+    public static final Color WALL = new Color(169, 169, 169);
+    /**
+     * The color of the paddle.
+     */
+    public static final Color PADDLE = new Color(255, 69, 0);
+    /**
+     * The colors of the rows of blocks, from the top row down, comfortable on the background.
+     */
+    private static final Color[] BLOCK_ROWS = {new Color(255, 255, 0), new Color(255, 140, 0),
+            new Color(0, 128, 0), new Color(75, 0, 130), new Color(255, 20, 147), new Color(0, 191, 255)};
+
+    /**
+     * Prevents instantiation.
+     */
+    private Palette() {
+    }
+
+    /**
+     * Returns the number of block row colors.
+     *
+     * @return the number of colors
+     */
+    public static int blockRowCount() {
+        return BLOCK_ROWS.length;
+    }
+
+    /**
+     * Returns the color of a row of blocks.
+     *
+     * @param row the row, counted from the top
+     * @return the color of the row
+     */
+    public static Color blockRow(int row) {
+        return BLOCK_ROWS[row];
+    }
+}
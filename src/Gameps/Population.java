@@ -0,0 +1,18 @@
+package Gameps;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * The Population interface is a read-only view of how many objects of each kind a collection
+ * holds, for monitoring. Only the owner of the collection changes the counts.
+ */
+public interface Population {
+
+    /**
+     * Returns the number of objects of the given kind in the collection.
+     *
+     * @param type the kind of object
+     * @return the number of objects of that kind
+     */
+    int count(ObjectType type);
+}
@@ -0,0 +1,49 @@
+package Gameps;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * PopulationCounts keeps a live count of the objects of every kind in a collection.
+ * The owner of the collection reports every addition and removal, so reading a count
+ * never requires a scan. Only classes of the package can change the counts; everyone else
+ * sees them through Population.
+ */
+public class PopulationCounts implements Population {
+    private final int[] counts;
+
+    /**
+     * Constructs a PopulationCounts with every count at zero.
+     */
+    public PopulationCounts() {
+        this.counts = new int[ObjectType.values().length];
+    }
+
+    /**
+     * Records that an object was added to the collection.
+     *
+     * @param o the object that was added
+     */
+    void added(Object o) {
+        this.counts[ObjectType.of(o).ordinal()]++;
+    }
+
+    /**
+     * Records that an object was removed from the collection.
+     *
+     * @param o the object that was removed
+     */
+    void removed(Object o) {
+        this.counts[ObjectType.of(o).ordinal()]--;
+    }
+
+    /**
+     * Returns the number of objects of the given kind in the collection.
+     *
+     * @param type the kind of object
+     * @return the number of objects of that kind
+     */
+    @Override
+    public int count(ObjectType type) {
+        return this.counts[type.ordinal()];
+    }
+}
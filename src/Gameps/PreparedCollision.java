@@ -0,0 +1,95 @@
+package Gameps;
+
+import Geometry.Line;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * A PreparedCollision is a closest-collision query whose expensive part, the search of the
+ * static collidables, was run ahead of time, possibly on another thread. When the query is
+ * finished with Gameps.GameEnvironment.getClosestCollision(PreparedCollision), the early result
+ * is used only if the static collidables have not changed since in a way that could affect
+ * it, so the answer is always the same as a query run from scratch.
+ */
+public final class PreparedCollision {
+    private final Line trajectory;
+    private final double radius;
+    private final CollisionInfo staticHit;
+    private final long staticVersion;
+    private final int collidablesTested;
+    private final int nodesVisited;
+
+    /**
+     * Constructs a PreparedCollision.
+     *
+     * @param trajectory        the trajectory of the query
+     * @param radius            the radius of the query
+     * @param staticHit         the closest static collision, or null if there is none
+     * @param staticVersion     the version of the static collidables the query ran against
+     * @param collidablesTested the number of collidables the static part tested
+     * @param nodesVisited      the number of cells or nodes the static part visited
+     */
+    PreparedCollision(Line trajectory, double radius, CollisionInfo staticHit, long staticVersion,
+                      int collidablesTested, int nodesVisited) {
+        this.trajectory = trajectory;
+        this.radius = radius;
+        this.staticHit = staticHit;
+        this.staticVersion = staticVersion;
+        this.collidablesTested = collidablesTested;
+        this.nodesVisited = nodesVisited;
+    }
+
+    /**
+     * Returns the number of collidables the static part tested.
+     *
+     * @return the number of collidables tested
+     */
+    int collidablesTested() {
+        return this.collidablesTested;
+    }
+
+    /**
+     * Returns the number of grid cells or tree nodes the static part visited.
+     *
+     * @return the number of cells or nodes visited
+     */
+    int nodesVisited() {
+        return this.nodesVisited;
+    }
+
+    /**
+     * Returns the trajectory of the query.
+     *
+     * @return the trajectory
+     */
+    public Line trajectory() {
+        return this.trajectory;
+    }
+
+    /**
+     * Returns the radius of the query.
+     *
+     * @return the radius
+     */
+    public double radius() {
+        return this.radius;
+    }
+
+    /**
+     * Returns the closest static collision found ahead of time.
+     *
+     * @return the collision information, or null if there is none
+     */
+    CollisionInfo staticHit() {
+        return this.staticHit;
+    }
+
+    /**
+     * Returns the version of the static collidables the query ran against.
+     *
+     * @return the version
+     */
+    long staticVersion() {
+        return this.staticVersion;
+    }
+}
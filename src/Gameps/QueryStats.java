@@ -0,0 +1,51 @@
+package Gameps;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * QueryStats holds how much work a single closest-collision query did: how many collidables
+ * it tested against the trajectory, and how many grid cells or tree nodes it visited to find
+ * them. Indexes fill it in when asked to, so different indexes can be compared on the same game.
+ */
+public final class QueryStats {
+    private int collidablesTested;
+    private int nodesVisited;
+
+    /**
+     * Returns the number of collidables the query tested against the trajectory.
+     *
+     * @return the number of collidables tested
+     */
+    public int getCollidablesTested() {
+        return this.collidablesTested;
+    }
+
+    /**
+     * Returns the number of grid cells or tree nodes the query visited. A linear scan visits none.
+     *
+     * @return the number of cells or nodes visited
+     */
+    public int getNodesVisited() {
+        return this.nodesVisited;
+    }
+
+    /**
+     * Adds the work of an index to the query. A query that searches several indexes adds
+     * up the work of all of them.
+     *
+     * @param tested  the number of collidables tested
+     * @param visited the number of cells or nodes visited
+     */
+    void add(int tested, int visited) {
+        this.collidablesTested += tested;
+        this.nodesVisited += visited;
+    }
+
+    /**
+     * Clears the numbers before a new query.
+     */
+    void reset() {
+        this.collidablesTested = 0;
+        this.nodesVisited = 0;
+    }
+}
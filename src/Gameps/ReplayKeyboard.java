@@ -0,0 +1,68 @@
+package Gameps;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * ReplayKeyboard plays back the keys of an input recording, one step at a time, reading the
+ * runs of steps from the recording only as they are needed. Once the recording ends, it has
+ * no next step, and the game stops running headless.
+ */
+public class ReplayKeyboard extends TickKeyboard {
+    private DataInput in;
+    private long stepsLeft;
+    private int keys;
+    private boolean ended;
+    private long steps;
+
+    /**
+     * Constructs a ReplayKeyboard that reads the runs of steps of a recording.
+     *
+     * @param in the recording, positioned at its first run
+     */
+    ReplayKeyboard(DataInput in) {
+        this.in = in;
+    }
+
+    @Override
+    public boolean hasNextTick() {
+        if (this.stepsLeft == 0 && !this.ended) {
+            try {
+                long run = InputLog.readVarLong(this.in);
+                if (run == 0) {
+                    this.ended = true;
+                } else {
+                    this.stepsLeft = run >>> 2;
+                    this.keys = (int) (run & 3);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return this.stepsLeft > 0;
+    }
+
+    @Override
+    public void nextTick() {
+        if (!hasNextTick()) {
+            // Past the end of the recording, nothing is held
+            setKeys(false, false);
+            return;
+        }
+        this.stepsLeft--;
+        this.steps++;
+        setKeys((this.keys & InputLog.LEFT) != 0, (this.keys & InputLog.RIGHT) != 0);
+    }
+
+    /**
+     * Returns the number of steps played back so far.
+     *
+     * @return the number of steps
+     */
+    public long getSteps() {
+        return this.steps;
+    }
+}
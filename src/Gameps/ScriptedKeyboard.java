@@ -0,0 +1,89 @@
+package Gameps;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * ScriptedKeyboard plays back a fixed script of key presses, one step at a time, for runs
+ * with nobody at the keyboard. The script is a list of segments, each holding LEFT, RIGHT or
+ * nothing for a number of steps. After the last segment the script starts over, and an empty
+ * script never presses anything.
+ */
+public class ScriptedKeyboard extends TickKeyboard {
+    private static final int NONE = 0;
+    private static final int LEFT = 1;
+    private static final int RIGHT = 2;
+    private List<int[]> segments;
+    private int segment;
+    private int stepsLeft;
+
+    /**
+     * Constructs a ScriptedKeyboard with an empty script.
+     */
+    public ScriptedKeyboard() {
+        this.segments = new ArrayList<>();
+        this.segment = -1;
+    }
+
+    /**
+     * Adds a segment that holds the LEFT key.
+     *
+     * @param steps the number of steps to hold the key for
+     * @return this keyboard, so calls can be chained
+     */
+    public ScriptedKeyboard left(int steps) {
+        return add(LEFT, steps);
+    }
+
+    /**
+     * Adds a segment that holds the RIGHT key.
+     *
+     * @param steps the number of steps to hold the key for
+     * @return this keyboard, so calls can be chained
+     */
+    public ScriptedKeyboard right(int steps) {
+        return add(RIGHT, steps);
+    }
+
+    /**
+     * Adds a segment with no key pressed.
+     *
+     * @param steps the number of steps to wait for
+     * @return this keyboard, so calls can be chained
+     */
+    public ScriptedKeyboard idle(int steps) {
+        return add(NONE, steps);
+    }
+
+    /**
+     * Adds a segment to the script.
+     *
+     * @param key   the key to hold
+     * @param steps the number of steps to hold it for
+     * @return this keyboard
+     */
+    private ScriptedKeyboard add(int key, int steps) {
+        if (steps <= 0) {
+            throw new IllegalArgumentException("a segment must last at least one step");
+        }
+        this.segments.add(new int[] {key, steps});
+        return this;
+    }
+
+    @Override
+    public void nextTick() {
+        if (this.segments.isEmpty()) {
+            setKeys(false, false);
+            return;
+        }
+        if (this.stepsLeft == 0) {
+            this.segment = (this.segment + 1) % this.segments.size();
+            this.stepsLeft = this.segments.get(this.segment)[1];
+        }
+        this.stepsLeft--;
+        int key = this.segments.get(this.segment)[0];
+        setKeys(key == LEFT, key == RIGHT);
+    }
+}
@@ -0,0 +1,275 @@
+package Gameps;
+
+import Geometry.Rectangle;
+import biuoop.DrawSurface;
+import sprites.Block;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * StaticLayer keeps the background and every block and wall drawn on an offscreen image, so a
+ * frame draws them with a single image instead of two rectangles per block. The image is drawn
+ * in full once. After that, only the areas of blocks that were added or removed are drawn
+ * again, so the cost of a frame depends on what changed, not on how many blocks there are.
+ * To find the blocks an area overlaps without looking at every block, the layer is divided into
+ * square cells, and every block is registered in the cells it covers.
+ */
+public class StaticLayer {
+    // A block's outline is drawn one pixel past its width and height
+    private static final int OUTLINE = 1;
+    private static final int CELL_SIZE = 32;
+    private static final Comparator<Entry> BY_ORDER = Comparator.comparingLong(e -> e.order);
+    private final int width;
+    private final int height;
+    private final Color background;
+    private final int cols;
+    private final int rows;
+    // The blocks in the order they were added, which is the order they are drawn in
+    private Map<Block, Entry> entries;
+    private List<Entry>[] cells;
+    private long nextOrder;
+    // Marks the entries already picked for the area being drawn
+    private int stamp;
+    private List<Entry> overlapping;
+    private List<java.awt.Rectangle> dirty;
+    private BufferedImage image;
+    private ImageDrawSurface surface;
+    private DrawBatch batch;
+
+    /**
+     * Constructs an empty StaticLayer.
+     *
+     * @param width      the width of the layer
+     * @param height     the height of the layer
+     * @param background the color of the background
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public StaticLayer(int width, int height, Color background) {
+        this.width = width;
+        this.height = height;
+        this.background = background;
+        this.cols = (width + CELL_SIZE - 1) / CELL_SIZE;
+        this.rows = (height + CELL_SIZE - 1) / CELL_SIZE;
+        this.entries = new LinkedHashMap<>();
+        this.cells = new List[this.cols * this.rows];
+        this.overlapping = new ArrayList<>();
+        this.dirty = new ArrayList<>();
+        this.batch = new DrawBatch();
+    }
+
+    /**
+     * Adds a block to the layer.
+     *
+     * @param block the block to add
+     */
+    public void add(Block block) {
+        if (this.entries.containsKey(block)) {
+            return;
+        }
+        Entry entry = new Entry(block, this.nextOrder++, bounds(block.getCollisionRectangle()), this.cols, this.rows);
+        this.entries.put(block, entry);
+        for (int row = entry.minRow; row <= entry.maxRow; row++) {
+            for (int col = entry.minCol; col <= entry.maxCol; col++) {
+                int index = row * this.cols + col;
+                if (this.cells[index] == null) {
+                    this.cells[index] = new ArrayList<>();
+                }
+                this.cells[index].add(entry);
+            }
+        }
+        invalidate(entry);
+    }
+
+    /**
+     * Adds many blocks to the layer at once, growing the map of blocks once for the whole batch.
+     *
+     * @param batch the blocks to add
+     * @param count the number of blocks to add, from the start of the array
+     */
+    public void addAll(Block[] batch, int count) {
+        if (count > this.entries.size()) {
+            Map<Block, Entry> grown = new LinkedHashMap<>((int) ((this.entries.size() + count) / 0.75f) + 1);
+            grown.putAll(this.entries);
+            this.entries = grown;
+        }
+        for (int i = 0; i < count; i++) {
+            add(batch[i]);
+        }
+    }
+
+    /**
+     * Removes a block from the layer, so the area it covered is drawn again in the next frame.
+     *
+     * @param block the block to remove
+     */
+    public void remove(Block block) {
+        Entry entry = this.entries.remove(block);
+        if (entry == null) {
+            return;
+        }
+        for (int row = entry.minRow; row <= entry.maxRow; row++) {
+            for (int col = entry.minCol; col <= entry.maxCol; col++) {
+                List<Entry> cell = this.cells[row * this.cols + col];
+                // The order within a cell does not matter, so the last entry fills the gap
+                int at = cell.indexOf(entry);
+                cell.set(at, cell.get(cell.size() - 1));
+                cell.remove(cell.size() - 1);
+            }
+        }
+        invalidate(entry);
+    }
+
+    /**
+     * Marks the area covered by a block as needing to be drawn again.
+     *
+     * @param entry the entry of the block
+     */
+    private void invalidate(Entry entry) {
+        if (this.image == null) {
+            // Nothing has been drawn yet, the first frame draws everything
+            return;
+        }
+        this.dirty.add(entry.bounds);
+    }
+
+    /**
+     * Returns the pixels covered by a rectangle, including its outline.
+     *
+     * @param rect the rectangle
+     * @return the covered pixels
+     */
+    private static java.awt.Rectangle bounds(Rectangle rect) {
+        int x = (int) Math.floor(rect.getMinx()) - OUTLINE;
+        int y = (int) Math.floor(rect.getMiny()) - OUTLINE;
+        int right = (int) Math.ceil(rect.getRightX()) + OUTLINE + 1;
+        int bottom = (int) Math.ceil(rect.getBottomY()) + OUTLINE + 1;
+        return new java.awt.Rectangle(x, y, right - x, bottom - y);
+    }
+
+    /**
+     * Returns the cell containing a pixel coordinate, clamped to the cells of the layer, so
+     * anything past the edge of the layer is registered in the cells along that edge.
+     *
+     * @param coordinate the pixel coordinate
+     * @param count      the number of cells along the axis
+     * @return the cell
+     */
+    private static int cellOf(int coordinate, int count) {
+        return Math.max(0, Math.min(Math.floorDiv(coordinate, CELL_SIZE), count - 1));
+    }
+
+    /**
+     * Brings the offscreen image up to date and draws it on the given surface.
+     *
+     * @param d the surface to draw on
+     */
+    public void drawOn(DrawSurface d) {
+        if (this.image == null) {
+            this.image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_RGB);
+            this.surface = new ImageDrawSurface(this.image);
+            repaint(new java.awt.Rectangle(0, 0, this.width, this.height), this.entries.values());
+        }
+        for (java.awt.Rectangle area : this.dirty) {
+            repaint(area, overlapping(area));
+        }
+        this.dirty.clear();
+        d.drawImage(0, 0, this.image);
+    }
+
+    /**
+     * Finds the blocks that overlap an area, in the cells the area covers.
+     *
+     * @param area the area
+     * @return the blocks that overlap the area, in the order they were added
+     */
+    private List<Entry> overlapping(java.awt.Rectangle area) {
+        this.overlapping.clear();
+        if (++this.stamp == 0) {
+            // The stamp wrapped around, so old marks could be mistaken for new ones
+            for (Entry entry : this.entries.values()) {
+                entry.stamp = 0;
+            }
+            this.stamp = 1;
+        }
+        int lastRow = cellOf(area.y + area.height - 1, this.rows);
+        int lastCol = cellOf(area.x + area.width - 1, this.cols);
+        for (int row = cellOf(area.y, this.rows); row <= lastRow; row++) {
+            for (int col = cellOf(area.x, this.cols); col <= lastCol; col++) {
+                List<Entry> cell = this.cells[row * this.cols + col];
+                if (cell == null) {
+                    continue;
+                }
+                for (Entry entry : cell) {
+                    if (entry.stamp != this.stamp && entry.bounds.intersects(area)) {
+                        entry.stamp = this.stamp;
+                        this.overlapping.add(entry);
+                    }
+                }
+            }
+        }
+        this.overlapping.sort(BY_ORDER);
+        return this.overlapping;
+    }
+
+    /**
+     * Draws an area of the image again: the background, then the given blocks.
+     * The blocks are drawn through a batch, so all their fills of a color are drawn together,
+     * followed by all their outlines.
+     *
+     * @param area   the area to draw
+     * @param blocks the blocks that overlap the area, in the order they were added
+     */
+    private void repaint(java.awt.Rectangle area, Collection<Entry> blocks) {
+        this.surface.setClip(area.x, area.y, area.width, area.height);
+        this.batch.begin(this.surface);
+        this.batch.setColor(this.background);
+        this.batch.fillRectangle(area.x, area.y, area.width, area.height);
+        for (Entry entry : blocks) {
+            entry.block.drawOn(this.batch);
+        }
+        this.batch.flush();
+        this.surface.clearClip();
+    }
+
+    /**
+     * A block in the layer, together with the pixels and the cells it covers.
+     */
+    private static final class Entry {
+        private final Block block;
+        private final long order;
+        private final java.awt.Rectangle bounds;
+        private final int minCol;
+        private final int minRow;
+        private final int maxCol;
+        private final int maxRow;
+        private int stamp;
+
+        /**
+         * Constructs an entry for a block.
+         *
+         * @param block  the block
+         * @param order  the position of the block in the drawing order
+         * @param bounds the pixels the block covers
+         * @param cols   the number of columns of cells in the layer
+         * @param rows   the number of rows of cells in the layer
+         */
+        private Entry(Block block, long order, java.awt.Rectangle bounds, int cols, int rows) {
+            this.block = block;
+            this.order = order;
+            this.bounds = bounds;
+            this.minCol = cellOf(bounds.x, cols);
+            this.minRow = cellOf(bounds.y, rows);
+            this.maxCol = cellOf(bounds.x + bounds.width - 1, cols);
+            this.maxRow = cellOf(bounds.y + bounds.height - 1, rows);
+        }
+    }
+}
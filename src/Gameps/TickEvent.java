@@ -0,0 +1,33 @@
+package Gameps;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * A Flight Recorder event for a single simulation step of a Gameps.Game.
+ */
+@Name("arkanoid.Tick")
+@Label("Game Tick")
+@Category("Arkanoid")
+@Description("A simulation step and the collision work done in it")
+class TickEvent extends Event {
+    @Label("Balls")
+    int balls;
+
+    @Label("Queries")
+    long queries;
+
+    @Label("Collidables Tested")
+    long collidablesTested;
+
+    @Label("Nodes Visited")
+    long nodesVisited;
+
+    @Label("Hits")
+    long hits;
+}
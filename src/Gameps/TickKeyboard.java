@@ -0,0 +1,71 @@
+package Gameps;
+
+import biuoop.KeyboardSensor;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * TickKeyboard is a keyboard whose state only changes between simulation steps.
+ * The game calls nextTick() once before every step, and during the step the paddle
+ * reads the LEFT and RIGHT keys as they were at that moment. This keeps every step
+ * of a run reproducible, whatever the source of the key presses.
+ */
+public abstract class TickKeyboard implements KeyboardSensor {
+    private boolean left;
+    private boolean right;
+
+    /**
+     * Moves to the next simulation step and updates the state of the keys.
+     */
+    public abstract void nextTick();
+
+    /**
+     * Checks if there is a next step to move to. Live and scripted keyboards never run out,
+     * while a replayed recording ends.
+     *
+     * @return true if nextTick() has a step to move to
+     */
+    public boolean hasNextTick() {
+        return true;
+    }
+
+    /**
+     * Sets the state of the keys for the current step.
+     *
+     * @param leftPressed  true if the LEFT key is pressed
+     * @param rightPressed true if the RIGHT key is pressed
+     */
+    protected void setKeys(boolean leftPressed, boolean rightPressed) {
+        this.left = leftPressed;
+        this.right = rightPressed;
+    }
+
+    /**
+     * Checks if the LEFT key is pressed in the current step.
+     *
+     * @return true if the LEFT key is pressed
+     */
+    public boolean isLeftPressed() {
+        return this.left;
+    }
+
+    /**
+     * Checks if the RIGHT key is pressed in the current step.
+     *
+     * @return true if the RIGHT key is pressed
+     */
+    public boolean isRightPressed() {
+        return this.right;
+    }
+
+    @Override
+    public boolean isPressed(String key) {
+        if (LEFT_KEY.equals(key)) {
+            return this.left;
+        }
+        if (RIGHT_KEY.equals(key)) {
+            return this.right;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,78 @@
+package Gameps;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * TripleBuffer hands values from one writer thread to one reader thread without locks and
+ * without either of them ever waiting. The writer fills its own buffer and publishes it, the
+ * reader takes the newest published buffer whenever it wants one, and the third buffer sits
+ * between them. A buffer is never written while the reader holds it, and values the reader
+ * had no time for are simply skipped.
+ */
+public class TripleBuffer<T> {
+    // The shared state packs the index of the middle buffer with a flag telling whether it
+    // holds a value the reader has not taken yet
+    private static final int FRESH = 4;
+    private final T[] buffers;
+    private final AtomicInteger middle;
+    private int writeIndex;
+    private int readIndex;
+
+    /**
+     * Constructs a TripleBuffer whose three buffers are made by the given factory.
+     *
+     * @param factory makes an empty buffer
+     */
+    @SuppressWarnings("unchecked")
+    public TripleBuffer(Supplier<T> factory) {
+        this.buffers = (T[]) new Object[] {factory.get(), factory.get(), factory.get()};
+        this.writeIndex = 0;
+        this.middle = new AtomicInteger(1);
+        this.readIndex = 2;
+    }
+
+    /**
+     * Returns the buffer the writer fills next. Only the writer thread may call this.
+     *
+     * @return the write buffer
+     */
+    public T getWriteBuffer() {
+        return this.buffers[this.writeIndex];
+    }
+
+    /**
+     * Publishes the write buffer to the reader, and gives the writer a free buffer to fill
+     * next. Only the writer thread may call this.
+     */
+    public void publish() {
+        int previous = this.middle.getAndSet(this.writeIndex | FRESH);
+        this.writeIndex = previous & ~FRESH;
+    }
+
+    /**
+     * Takes the newest published buffer, if there is one the reader has not seen yet.
+     * Only the reader thread may call this.
+     *
+     * @return true if a new buffer was taken, false if the read buffer is still the newest
+     */
+    public boolean update() {
+        if ((this.middle.get() & FRESH) == 0) {
+            return false;
+        }
+        int previous = this.middle.getAndSet(this.readIndex);
+        this.readIndex = previous & ~FRESH;
+        return true;
+    }
+
+    /**
+     * Returns the buffer the reader holds. Only the reader thread may call this.
+     *
+     * @return the read buffer
+     */
+    public T getReadBuffer() {
+        return this.buffers[this.readIndex];
+    }
+}
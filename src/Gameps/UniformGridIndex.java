@@ -0,0 +1,323 @@
+package Gameps;
+
+import Geometry.Line;
+import Geometry.Rectangle;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * UniformGridIndex divides the world into square cells and registers every collidable in
+ * the cells its rectangle overlaps. A query walks only the cells the trajectory crosses,
+ * from its start to its end, and stops as soon as the closest hit found so far is closer
+ * than the next cell boundary. Collidables that stick out of the grid bounds are kept in
+ * a separate list that is tested on every query.
+ */
+public class UniformGridIndex implements CollisionIndex {
+    // Rectangles are registered slightly larger than they are, so that collision points
+    // that land exactly on a cell boundary are always found from both sides of it.
+    private static final double MARGIN = 0.001;
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    private List<Entry>[] cells;
+    private List<Entry> overflow;
+    private Map<Collidable, Entry> entries;
+    // Every entry owns a slot, and every thread marks the entries a query has already tested
+    // in its own array of slots, so queries may run in parallel as long as nothing modifies
+    // the grid meanwhile
+    private Deque<Integer> freeSlots;
+    private int nextSlot;
+    private final ThreadLocal<Visits> visits = ThreadLocal.withInitial(Visits::new);
+
+    /**
+     * Constructs an empty UniformGridIndex covering the given area.
+     *
+     * @param originX  the x-coordinate of the upper-left corner of the grid
+     * @param originY  the y-coordinate of the upper-left corner of the grid
+     * @param width    the width of the area covered by the grid
+     * @param height   the height of the area covered by the grid
+     * @param cellSize the width and height of a single cell
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public UniformGridIndex(double originX, double originY, double width, double height, double cellSize) {
+        if (cellSize <= 0 || width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("grid dimensions must be positive");
+        }
+        this.originX = originX;
+        this.originY = originY;
+        this.cellSize = cellSize;
+        this.cols = (int) Math.ceil(width / cellSize);
+        this.rows = (int) Math.ceil(height / cellSize);
+        this.cells = new List[this.cols * this.rows];
+        this.overflow = new ArrayList<>();
+        this.entries = new IdentityHashMap<>();
+        this.freeSlots = new ArrayDeque<>();
+    }
+
+    @Override
+    public void add(Collidable c, long order) {
+        int slot = this.freeSlots.isEmpty() ? this.nextSlot++ : this.freeSlots.pop();
+        Entry entry = new Entry(c, order, slot);
+        this.entries.put(c, entry);
+        insert(entry);
+    }
+
+    @Override
+    public void addAll(Collidable[] collidables, int count, long firstOrder) {
+        if (count > this.entries.size()) {
+            // Grow the map once for the whole batch, rather than doubling it all the way up
+            Map<Collidable, Entry> grown = new IdentityHashMap<>(this.entries.size() + count);
+            grown.putAll(this.entries);
+            this.entries = grown;
+        }
+        CollisionIndex.super.addAll(collidables, count, firstOrder);
+    }
+
+    @Override
+    public void remove(Collidable c) {
+        Entry entry = this.entries.remove(c);
+        if (entry != null) {
+            extract(entry);
+            this.freeSlots.push(entry.slot);
+        }
+    }
+
+    @Override
+    public void update(Collidable c) {
+        Entry entry = this.entries.get(c);
+        if (entry != null) {
+            extract(entry);
+            insert(entry);
+        }
+    }
+
+    /**
+     * Registers an entry in every cell its rectangle overlaps, or in the overflow list if
+     * the rectangle is not fully inside the grid.
+     *
+     * @param entry the entry to register
+     */
+    private void insert(Entry entry) {
+        Rectangle rect = entry.collidable.getCollisionRectangle();
+        double minX = rect.getMinx() - MARGIN - this.originX;
+        double minY = rect.getMiny() - MARGIN - this.originY;
+        double maxX = rect.getRightX() + MARGIN - this.originX;
+        double maxY = rect.getBottomY() + MARGIN - this.originY;
+        if (minX < 0 || minY < 0 || maxX > this.cols * this.cellSize || maxY > this.rows * this.cellSize) {
+            entry.overflow = true;
+            this.overflow.add(entry);
+            return;
+        }
+        entry.overflow = false;
+        entry.minCol = (int) (minX / this.cellSize);
+        entry.minRow = (int) (minY / this.cellSize);
+        entry.maxCol = Math.min((int) (maxX / this.cellSize), this.cols - 1);
+        entry.maxRow = Math.min((int) (maxY / this.cellSize), this.rows - 1);
+        for (int row = entry.minRow; row <= entry.maxRow; row++) {
+            for (int col = entry.minCol; col <= entry.maxCol; col++) {
+                int index = row * this.cols + col;
+                if (this.cells[index] == null) {
+                    this.cells[index] = new ArrayList<>();
+                }
+                this.cells[index].add(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes an entry from every cell it was registered in.
+     *
+     * @param entry the entry to remove
+     */
+    private void extract(Entry entry) {
+        if (entry.overflow) {
+            this.overflow.remove(entry);
+            return;
+        }
+        for (int row = entry.minRow; row <= entry.maxRow; row++) {
+            for (int col = entry.minCol; col <= entry.maxCol; col++) {
+                this.cells[row * this.cols + col].remove(entry);
+            }
+        }
+    }
+
+    @Override
+    public CollisionInfo getClosestCollision(Line trajectory, double radius, QueryStats stats) {
+        ClosestHit hit = new ClosestHit(trajectory, radius, stats);
+        Visits visited = this.visits.get();
+        int stamp = visited.next(this.nextSlot);
+        int[] stamps = visited.stamps;
+        for (Entry entry : this.overflow) {
+            hit.offer(entry.collidable, entry.order);
+        }
+
+        double x0 = trajectory.start().getX() - this.originX;
+        double y0 = trajectory.start().getY() - this.originY;
+        double dx = trajectory.end().getX() - trajectory.start().getX();
+        double dy = trajectory.end().getY() - trajectory.start().getY();
+        double length = trajectory.length();
+
+        // A circle can touch collidables in the cells around the one its center is in, and
+        // its center can be up to a radius outside the grid while doing so
+        int ring = radius > 0 ? (int) Math.ceil(radius / this.cellSize) : 0;
+        double reach = radius + MARGIN;
+
+        // Clip the trajectory to the grid bounds (Liang-Barsky)
+        double[] range = {0, 1};
+        if (!clip(-dx, x0 + reach, range) || !clip(dx, this.cols * this.cellSize + reach - x0, range)
+                || !clip(-dy, y0 + reach, range) || !clip(dy, this.rows * this.cellSize + reach - y0, range)) {
+            return hit.toCollisionInfo();
+        }
+        double tEnd = range[1];
+
+        int col = cellOf(x0 + range[0] * dx, this.cols, ring);
+        int row = cellOf(y0 + range[0] * dy, this.rows, ring);
+        int stepCol = dx > 0 ? 1 : -1;
+        int stepRow = dy > 0 ? 1 : -1;
+        double tDeltaX = dx == 0 ? Double.POSITIVE_INFINITY : this.cellSize / Math.abs(dx);
+        double tDeltaY = dy == 0 ? Double.POSITIVE_INFINITY : this.cellSize / Math.abs(dy);
+        double tMaxX = dx == 0 ? Double.POSITIVE_INFINITY : ((col + (dx > 0 ? 1 : 0)) * this.cellSize - x0) / dx;
+        double tMaxY = dy == 0 ? Double.POSITIVE_INFINITY : ((row + (dy > 0 ? 1 : 0)) * this.cellSize - y0) / dy;
+
+        while (true) {
+            int lastRow = Math.min(row + ring, this.rows - 1);
+            int lastCol = Math.min(col + ring, this.cols - 1);
+            for (int r = Math.max(row - ring, 0); r <= lastRow; r++) {
+                for (int c = Math.max(col - ring, 0); c <= lastCol; c++) {
+                    List<Entry> cell = this.cells[r * this.cols + c];
+                    hit.visit();
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Entry entry : cell) {
+                        if (stamps[entry.slot] != stamp) {
+                            stamps[entry.slot] = stamp;
+                            hit.offer(entry.collidable, entry.order);
+                        }
+                    }
+                }
+            }
+            double tNext = Math.min(tMaxX, tMaxY);
+            // Every collidable not tested yet can only be hit beyond the next cell boundary
+            if (tNext > tEnd || (tNext - hit.minT()) * length > MARGIN) {
+                break;
+            }
+            if (tMaxX < tMaxY) {
+                col += stepCol;
+                tMaxX += tDeltaX;
+            } else {
+                row += stepRow;
+                tMaxY += tDeltaY;
+            }
+            if (col < -ring || col >= this.cols + ring || row < -ring || row >= this.rows + ring) {
+                break;
+            }
+        }
+        return hit.toCollisionInfo();
+    }
+
+    /**
+     * Clips the parametric range of a segment against one side of the grid bounds.
+     *
+     * @param p     the negated or positive direction component towards the side
+     * @param q     the distance from the segment start to the side
+     * @param range the current {tMin, tMax} range, updated in place
+     * @return false if the segment lies entirely outside this side, true otherwise
+     */
+    private static boolean clip(double p, double q, double[] range) {
+        if (p == 0) {
+            return q >= 0;
+        }
+        double t = q / p;
+        if (p < 0) {
+            if (t > range[1]) {
+                return false;
+            }
+            range[0] = Math.max(range[0], t);
+        } else {
+            if (t < range[0]) {
+                return false;
+            }
+            range[1] = Math.min(range[1], t);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of the cell containing a coordinate, clamped to the grid and the
+     * given number of cells around it.
+     *
+     * @param coordinate the coordinate relative to the grid origin
+     * @param count      the number of cells along the axis
+     * @param ring       the number of cells allowed outside the grid on each side
+     * @return the cell index
+     */
+    private int cellOf(double coordinate, int count, int ring) {
+        int cell = (int) Math.floor(coordinate / this.cellSize);
+        return Math.max(-ring, Math.min(cell, count - 1 + ring));
+    }
+
+    /**
+     * A collidable registered in the grid, together with the cells it occupies.
+     */
+    private static final class Entry {
+        private final Collidable collidable;
+        private final long order;
+        private boolean overflow;
+        private int minCol;
+        private int minRow;
+        private int maxCol;
+        private int maxRow;
+        private final int slot;
+
+        /**
+         * Constructs an entry for a collidable.
+         *
+         * @param collidable the collidable object
+         * @param order      the insertion order of the object
+         * @param slot       the slot that marks the entry as tested during a query
+         */
+        private Entry(Collidable collidable, long order, int slot) {
+            this.collidable = collidable;
+            this.order = order;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * The entries a single thread has already tested during its current query.
+     */
+    private static final class Visits {
+        private int[] stamps = new int[64];
+        private int stamp;
+
+        /**
+         * Starts a new query, so every entry counts as not tested yet.
+         *
+         * @param slots the number of slots in use
+         * @return the stamp that marks an entry as tested during the new query
+         */
+        private int next(int slots) {
+            if (this.stamps.length < slots) {
+                this.stamps = Arrays.copyOf(this.stamps, Math.max(slots, this.stamps.length * 2));
+            }
+            this.stamp++;
+            if (this.stamp == 0) {
+                // The stamp wrapped around, so old marks could be mistaken for new ones
+                Arrays.fill(this.stamps, 0);
+                this.stamp = 1;
+            }
+            return this.stamp;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package Gameps;
+
+import biuoop.DrawSurface;
+import sprites.Block;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * WorldSnapshot is everything needed to draw one simulation step, copied out of the game so
+ * another thread can draw it while the simulation goes on: the balls, the paddle, which level
+ * blocks are still alive, and the score. Snapshots are reused from step to step, so filling
+ * one allocates nothing once its arrays are large enough.
+ */
+public class WorldSnapshot {
+    private int ballCount;
+    private int[] ballX = new int[16];
+    private int[] ballY = new int[16];
+    private int[] ballRadius = new int[16];
+    private Color[] ballColor = new Color[16];
+    private boolean hasPaddle;
+    private int paddleX;
+    private int paddleY;
+    private int paddleWidth;
+    private int paddleHeight;
+    private Color paddleColor;
+    private Block[] blocks = new Block[0];
+    private long[] liveBlocks = new long[0];
+    private int score;
+    private boolean over;
+
+    /**
+     * Empties the snapshot before it is filled with a new step.
+     */
+    public void clear() {
+        Arrays.fill(this.ballColor, 0, this.ballCount, null);
+        this.ballCount = 0;
+        this.hasPaddle = false;
+        this.paddleColor = null;
+    }
+
+    /**
+     * Adds a ball to the snapshot.
+     *
+     * @param x      the x-coordinate of the ball's center
+     * @param y      the y-coordinate of the ball's center
+     * @param radius the radius of the ball
+     * @param color  the color of the ball
+     */
+    public void addBall(int x, int y, int radius, Color color) {
+        if (this.ballCount == this.ballX.length) {
+            int length = this.ballCount * 2;
+            this.ballX = Arrays.copyOf(this.ballX, length);
+            this.ballY = Arrays.copyOf(this.ballY, length);
+            this.ballRadius = Arrays.copyOf(this.ballRadius, length);
+            this.ballColor = Arrays.copyOf(this.ballColor, length);
+        }
+        this.ballX[this.ballCount] = x;
+        this.ballY[this.ballCount] = y;
+        this.ballRadius[this.ballCount] = radius;
+        this.ballColor[this.ballCount] = color;
+        this.ballCount++;
+    }
+
+    /**
+     * Sets the paddle of the snapshot.
+     *
+     * @param x      the x-coordinate of the paddle's upper-left corner
+     * @param y      the y-coordinate of the paddle's upper-left corner
+     * @param width  the width of the paddle
+     * @param height the height of the paddle
+     * @param color  the color of the paddle
+     */
+    public void setPaddle(int x, int y, int width, int height, Color color) {
+        this.hasPaddle = true;
+        this.paddleX = x;
+        this.paddleY = y;
+        this.paddleWidth = width;
+        this.paddleHeight = height;
+        this.paddleColor = color;
+    }
+
+    /**
+     * Sets the level blocks and which of them are alive.
+     *
+     * @param table the level blocks, which must never be changed once shared
+     * @param live  a bitmap with bit i set if table[i] is alive
+     */
+    void setBlocks(Block[] table, long[] live) {
+        this.blocks = table;
+        if (this.liveBlocks.length != live.length) {
+            this.liveBlocks = new long[live.length];
+        }
+        System.arraycopy(live, 0, this.liveBlocks, 0, live.length);
+    }
+
+    /**
+     * Sets the score and whether the game is over.
+     *
+     * @param score the score
+     * @param over  true if the game is over
+     */
+    void setStatus(int score, boolean over) {
+        this.score = score;
+        this.over = over;
+    }
+
+    /**
+     * Returns the level blocks the snapshot refers to.
+     *
+     * @return the level blocks
+     */
+    Block[] blocks() {
+        return this.blocks;
+    }
+
+    /**
+     * Returns the score.
+     *
+     * @return the score
+     */
+    int score() {
+        return this.score;
+    }
+
+    /**
+     * Checks if the game was over in this step.
+     *
+     * @return true if the game is over
+     */
+    boolean isOver() {
+        return this.over;
+    }
+
+    /**
+     * Returns the number of words in the bitmap of live blocks.
+     *
+     * @return the number of words
+     */
+    int liveWords() {
+        return this.liveBlocks.length;
+    }
+
+    /**
+     * Returns a word of the bitmap of live blocks, holding the bits of blocks 64 * w to 64 * w + 63.
+     *
+     * @param w the index of the word
+     * @return the word
+     */
+    long liveWord(int w) {
+        return this.liveBlocks[w];
+    }
+
+    /**
+     * Draws the balls and the paddle of the snapshot.
+     *
+     * @param d the surface to draw on
+     */
+    void drawMovingOn(DrawSurface d) {
+        for (int i = 0; i < this.ballCount; i++) {
+            d.setColor(this.ballColor[i]);
+            d.fillCircle(this.ballX[i], this.ballY[i], this.ballRadius[i]);
+        }
+        if (this.hasPaddle) {
+            d.setColor(this.paddleColor);
+            d.fillRectangle(this.paddleX, this.paddleY, this.paddleWidth, this.paddleHeight);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package Gameps;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * The WorldStats interface is a read-only view of how many objects of each kind are
+ * currently in the game. Every method runs in constant time, so it can be polled every frame.
+ */
+public interface WorldStats {
+
+    /**
+     * Returns the number of blocks that can still be hit, including the death region.
+     *
+     * @return the number of live blocks
+     */
+    int blocks();
+
+    /**
+     * Returns the number of walls.
+     *
+     * @return the number of walls
+     */
+    int walls();
+
+    /**
+     * Returns the number of balls still in play.
+     *
+     * @return the number of live balls
+     */
+    int balls();
+
+    /**
+     * Returns the number of paddles.
+     *
+     * @return the number of paddles
+     */
+    int paddles();
+}
@@ -12,26 +12,14 @@ public class Line {
 
     /**
      * Constructs a line given two points.
+     * The line keeps its direction: it runs from the start point to the end point.
      *
      * @param start the start point of the line
      * @param end   the end point of the line
      */
     public Line(Point start, Point end) {
-        if (start.getX() == end.getX()) {
-            if (start.getY() > end.getY()) {
-                this.start = end;
-                this.end = start;
-            } else {
-                this.start = start;
-                this.end = end;
-            }
-        } else if (start.getX() > end.getX()) {
-            this.start = end;
-            this.end = start;
-        } else {
-            this.start = start;
-            this.end = end;
-        }
+        this.start = start;
+        this.end = end;
     }
 
     /**
@@ -98,168 +86,118 @@ public class Line {
 
     /**
      * Returns the intersection point if the lines intersect, and null otherwise.
+     * Lines that overlap along a common stretch have no single intersection point,
+     * so null is returned for them unless they share an endpoint.
      *
      * @param other the other line to check intersection with
      * @return the intersection point if the lines intersect, null otherwise
      */
     public Point intersectionWith(Line other) {
-        if (this.isIntersecting(other)) {
-            if (this.equals(other)) {
-                return null;
-            }
-            if (this.start.equals(other.start) || this.start.equals(other.end)) {
-                return this.start;
-            }
-            if (this.end.equals(other.start) || this.end.equals(other.end)) {
-                return this.end;
-            }
-            if (this.isOnLine(other.start(), other) && this.isOnLine(other.end(), other)
-                    || other.isOnLine(this.start(), this) && other.isOnLine(this.end(), this)) {
-                return null;
-            }
-            double x1 = this.start.getX();
-            double y1 = this.start.getY();
-            double x2 = other.start.getX();
-            double y2 = other.start.getY();
-            double m1 = (this.end.getY() - this.start.getY()) / (this.end.getX() - this.start.getX());
-            double m2 = (other.end.getY() - other.start.getY()) / (other.end.getX() - other.start.getX());
-            if (m1 == m2) {
-                return null;
-            }
-            double x = (m1 * x1 - m2 * x2 + y2 - y1) / (m1 - m2);
-            double y = m1 * (x - x1) + y1;
-            if (Math.abs(m1) == Double.POSITIVE_INFINITY) {
-                x = x1;
-                y = m2 * x + (y2 - m2 * x2);
-                if (inRange(x, y, other)) {
-                    return new Point(x, y);
-                }
-            }
-            if (Math.abs(m2) == Double.POSITIVE_INFINITY) {
-                x = x2;
-                y = m1 * x + (y1 - m1 * x1);
-                if (inRange(x, y, other)) {
-                    return new Point(x, y);
-                }
-            }
-            return new Point(x, y);
+        if (this.equals(other)) {
+            return null;
         }
-        return null;
-    }
-
-    /**
-     * Returns true if the lines are equal, false otherwise.
-     *
-     * @param other the other line to compare with
-     * @return true if the lines are equal, false otherwise
-     */
-    public boolean equals(Line other) {
-        return (this.start.equals(other.start) && this.end.equals(other.end)
-                || this.start.equals(other.end) && this.end.equals(other.start));
+        if (this.start.equals(other.start) || this.start.equals(other.end)) {
+            return this.start;
+        }
+        if (this.end.equals(other.start) || this.end.equals(other.end)) {
+            return this.end;
+        }
+        double t = intersectionParameter(other);
+        if (t < 0) {
+            return null;
+        }
+        return new Point(this.start.getX() + t * (this.end.getX() - this.start.getX()),
+                this.start.getY() + t * (this.end.getY() - this.start.getY()));
     }
 
     /**
-     * Checks if this line is vertical (parallel to the y-axis).
+     * Returns the parameter along this line at which it crosses another line.
+     * The parameter is 0 at the start of this line and 1 at its end, so it also tells how far
+     * along this line the crossing lies. The crossing is found with cross products, so
+     * vertical lines need no special care and nothing is ever divided by zero.
      *
-     * @return true if the line is vertical, false otherwise
+     * @param other the other line
+     * @return the parameter of the crossing between 0 and 1, or -1 if the lines do not cross
+     * at a single point (they miss each other, are parallel, or overlap)
      */
-    private boolean isVertical() {
-        return this.start.getX() == this.end.getX();
+    public double intersectionParameter(Line other) {
+        double rx = this.end.getX() - this.start.getX();
+        double ry = this.end.getY() - this.start.getY();
+        double sx = other.end.getX() - other.start.getX();
+        double sy = other.end.getY() - other.start.getY();
+        double denominator = rx * sy - ry * sx;
+        if (denominator == 0) {
+            return -1;
+        }
+        double qx = other.start.getX() - this.start.getX();
+        double qy = other.start.getY() - this.start.getY();
+        double t = (qx * sy - qy * sx) / denominator;
+        double u = (qx * ry - qy * rx) / denominator;
+        if (t < -epsilon || t > 1 + epsilon || u < -epsilon || u > 1 + epsilon) {
+            return -1;
+        }
+        return Math.max(0, Math.min(1, t));
     }
 
     /**
-     * Checks if a given point is within a small range (epsilon) of this line.
+     * Checks if another line lies on the same infinite line as this one and shares
+     * at least one point with it.
      *
-     * @param x     the x-coordinate of the point
-     * @param y     the y-coordinate of the point
-     * @param other the other line to compare ranges with
-     * @return true if the point is within range of this line, false otherwise
+     * @param other the other line
+     * @return true if the lines are collinear and overlap, false otherwise
      */
-    public Boolean inRange(double x, double y, Line other) {
-        if (x >= Math.min(this.start.getX(), this.end.getX()) - epsilon
-                && x <= Math.max(this.start.getX(), this.end.getX()) + epsilon
-                && x >= Math.min(other.start.getX(), other.end.getX()) - epsilon
-                && x <= Math.max(other.start.getX(), other.end.getX()) + epsilon
-                && y >= Math.min(this.start.getY(), this.end.getY()) - epsilon
-                && y <= Math.max(this.start.getY(), this.end.getY()) + epsilon
-                && y >= Math.min(other.start.getY(), other.end.getY()) - epsilon
-                && y <= Math.max(other.start.getY(), other.end.getY()) + epsilon) {
-            return true;
+    private boolean overlapsCollinear(Line other) {
+        double rx = this.end.getX() - this.start.getX();
+        double ry = this.end.getY() - this.start.getY();
+        double lengthSquared = rx * rx + ry * ry;
+        if (lengthSquared == 0) {
+            double sx = other.end.getX() - other.start.getX();
+            double sy = other.end.getY() - other.start.getY();
+            if (sx == 0 && sy == 0) {
+                return this.start.equals(other.start);
+            }
+            return other.overlapsCollinear(this);
         }
-        return false;
+        double qx = other.start.getX() - this.start.getX();
+        double qy = other.start.getY() - this.start.getY();
+        double px = other.end.getX() - this.start.getX();
+        double py = other.end.getY() - this.start.getY();
+        double crossStart = qx * ry - qy * rx;
+        double crossEnd = px * ry - py * rx;
+        double tolerance = epsilon * epsilon * lengthSquared;
+        if (crossStart * crossStart > tolerance || crossEnd * crossEnd > tolerance) {
+            return false;
+        }
+        double t0 = (qx * rx + qy * ry) / lengthSquared;
+        double t1 = (px * rx + py * ry) / lengthSquared;
+        return Math.max(t0, t1) >= -epsilon && Math.min(t0, t1) <= 1 + epsilon;
     }
 
     /**
-     * Checks if a given point lies on this line.
+     * Returns true if the lines are equal, false otherwise.
      *
-     * @param point the point to check
      * @param other the other line to compare with
-     * @return true if the point lies on this line, false otherwise
+     * @return true if the lines are equal, false otherwise
      */
-    public Boolean isOnLine(Point point, Line other) {
-        double m = (this.end.getY() - this.start.getY()) / (this.end.getX() - this.start.getX());
-        double x = point.getX();
-        if (Math.abs(m) == Double.POSITIVE_INFINITY) {
-            if (x == this.start.getX() && point.getY() <= Math.max(this.start.getY(), this.end.getY()) /*+ epsilon*/
-                    && point.getY() >= Math.min(this.start.getY(), this.end.getY()) /*- epsilon*/) {
-                return true;
-
-            }
-        } else {
-            double y = m * (x - this.start.getX()) + this.start.getY();
-            if (Math.abs(y - point.getY()) <= epsilon && inRange(x, y, other)) {
-                return true;
-            }
-        }
-        return false;
+    public boolean equals(Line other) {
+        return (this.start.equals(other.start) && this.end.equals(other.end)
+                || this.start.equals(other.end) && this.end.equals(other.start));
     }
 
     /**
-     * Returns the intersection point with another line, if exists.
+     * Returns true if this line shares at least one point with another line, false otherwise.
      *
-     * @param other the other line to find intersection with
-     * @return the intersection point if exists, null otherwise
+     * @param other the other line to check intersection with
+     * @return true if the lines intersect, false otherwise
      */
     public Boolean isIntersecting(Line other) {
-        double m1 = (this.end.getY() - this.start.getY()) / (this.end.getX() - this.start.getX());
-        double m2 = (other.end.getY() - other.start.getY()) / (other.end.getX() - other.start.getX());
-        if (isOnLine(other.start(), other) || isOnLine(other.end(), other)
-                || other.isOnLine(this.start(), other) || other.isOnLine(this.end(), other)) {
+        if (intersectionParameter(other) >= 0) {
             return true;
         }
-
-        if (Math.abs(m1 - m2) <= epsilon) {
-            return false;
-        }
-        if (Math.abs(m1) == Double.POSITIVE_INFINITY) {
-            return ifInfinity(m2, other);
-        }
-        if (Math.abs(m2) == Double.POSITIVE_INFINITY) {
-            return other.ifInfinity(m1, this);
-        }
-        double x1 = this.start.getX();
-        double y1 = this.start.getY();
-        double x2 = other.start.getX();
-        double y2 = other.start.getY();
-        double x = (m1 * x1 - m2 * x2 + y2 - y1) / (m1 - m2);
-        double y = m1 * (x - x1) + y1;
-        return (inRange(x, y, other));
+        return overlapsCollinear(other);
     }
 
 
-    /**
-     * Helper method to handle cases where the slope of the line is infinite.
-     *
-     * @param m     the slope of the other line
-     * @param other the other line to compare with
-     * @return true if the lines intersect, false otherwise
-     */
-    public Boolean ifInfinity(double m, Line other) {
-        double x = this.start.getX();
-        double y = m * x + (other.start.getY() - m * other.start().getX());
-        return inRange(x, y, other);
-    }
-
     /**
      * Finds the closest intersection point of this line with a given rectangle.
      *
@@ -268,41 +206,41 @@ public class Line {
      */
     public Point closestIntersectionToStartOfLine(Rectangle rect) {
         Line[] lines = rect.getLines();
-        Point closest = null;
+        double closest = -1;
         for (Line l : lines) {
-            Point intersection = this.intersectionWith(l);
-            if (closest == null) {
-                closest = intersection;
-            } else if (this.start.distance(intersection) < this.start.distance(closest)) {
-                closest = intersection;
+            double t = this.intersectionParameter(l);
+            if (t >= 0 && (closest < 0 || t < closest)) {
+                closest = t;
             }
         }
-        return closest;
+        if (closest < 0) {
+            return null;
+        }
+        return new Point(this.start.getX() + closest * (this.end.getX() - this.start.getX()),
+                this.start.getY() + closest * (this.end.getY() - this.start.getY()));
     }
 
     /**
-     * Checks if a given point lies exactly on this line.
+     * Checks if a given point lies on this line, up to a tiny tolerance.
+     * Like the crossing tests, it works with cross products, so vertical lines need no special care.
      *
      * @param point the point to check
-     * @return true if the point lies exactly on this line, false otherwise
+     * @return true if the point lies on this line, false otherwise
      */
     public Boolean isPointOnLine(Point point) {
-        double m = (this.end.getY() - this.start.getY()) / (this.end.getX() - this.start.getX());
-        double x = point.getX();
-        if (Math.abs(m) == Double.POSITIVE_INFINITY) {
-            if (x == this.start.getX() && point.getY()
-                    <=
-                    Math.max(this.start.getY(), this.end.getY()) + epsilon
-                    && point.getY() >= Math.min(this.start.getY(), this.end.getY()) - epsilon) {
-                return true;
-
-            }
-        } else {
-            double y = m * (x - this.start.getX()) + this.start.getY();
-            if (Math.abs(y - point.getY()) <= epsilon) {
-                return true;
-            }
+        double rx = this.end.getX() - this.start.getX();
+        double ry = this.end.getY() - this.start.getY();
+        double qx = point.getX() - this.start.getX();
+        double qy = point.getY() - this.start.getY();
+        double lengthSquared = rx * rx + ry * ry;
+        if (lengthSquared == 0) {
+            return qx * qx + qy * qy <= epsilon * epsilon;
+        }
+        double cross = qx * ry - qy * rx;
+        if (cross * cross > epsilon * epsilon * lengthSquared) {
+            return false;
         }
-        return false;
+        double t = (qx * rx + qy * ry) / lengthSquared;
+        return t >= -epsilon && t <= 1 + epsilon;
     }
 }
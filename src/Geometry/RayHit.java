@@ -0,0 +1,54 @@
+package Geometry;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * Geometry.RayHit holds the result of a segment-versus-rectangle query: the parameter along
+ * the segment where it first meets the rectangle and the edge it meets there.
+ * A single RayHit is meant to be reused for many queries, so the queries allocate nothing.
+ */
+public class RayHit {
+    private double t;
+    private int edge;
+
+    /**
+     * Constructs an empty RayHit.
+     */
+    public RayHit() {
+        this.t = -1;
+        this.edge = Rectangle.NO_EDGE;
+    }
+
+    /**
+     * Stores the result of a query.
+     *
+     * @param t    the parameter along the segment, between 0 and 1
+     * @param edge the edge of the rectangle that was hit
+     */
+    void set(double t, int edge) {
+        this.t = t;
+        this.edge = edge;
+    }
+
+    /**
+     * Returns the parameter along the segment where the rectangle was hit.
+     * 0 is the start of the segment and 1 is its end.
+     *
+     * @return the parameter of the hit
+     */
+    public double getT() {
+        return this.t;
+    }
+
+    /**
+     * Returns the edge of the rectangle that was hit, one of Rectangle.TOP, Rectangle.RIGHT,
+     * Rectangle.BOTTOM and Rectangle.LEFT. A circle swept into a rectangle may also hit one of
+     * its corners, one of Rectangle.UPPER_LEFT, Rectangle.UPPER_RIGHT, Rectangle.LOWER_RIGHT and
+     * Rectangle.LOWER_LEFT, and Rectangle.NO_EDGE means nothing was hit.
+     *
+     * @return the edge that was hit
+     */
+    public int getEdge() {
+        return this.edge;
+    }
+}
@@ -12,10 +12,34 @@ import java.util.List;
  * ID: 328285705
  */
 public class Rectangle {
+    /** No edge was hit. */
+    public static final int NO_EDGE = -1;
+    /** The top edge, from the upper-left to the upper-right corner. */
+    public static final int TOP = 0;
+    /** The right edge, from the upper-right to the lower-right corner. */
+    public static final int RIGHT = 1;
+    /** The bottom edge, from the lower-right to the lower-left corner. */
+    public static final int BOTTOM = 2;
+    /** The left edge, from the lower-left to the upper-left corner. */
+    public static final int LEFT = 3;
+    /** The upper-left corner. */
+    public static final int UPPER_LEFT = 4;
+    /** The upper-right corner. */
+    public static final int UPPER_RIGHT = 5;
+    /** The lower-right corner. */
+    public static final int LOWER_RIGHT = 6;
+    /** The lower-left corner. */
+    public static final int LOWER_LEFT = 7;
     private double minx;
     private double miny;
     private double maxX;
     private double maxy;
+    private double width;
+    private double height;
+    private Point upperLeft;
+    private Point upperRight;
+    private Point lowerRight;
+    private Point lowerLeft;
     private Line[] lines;
 
     /**
@@ -30,18 +54,58 @@ public class Rectangle {
         this.miny = upperLeft.getY();
         this.maxX = upperLeft.getX() + width;
         this.maxy = upperLeft.getY() + height;
+        this.width = width;
+        this.height = height;
         this.lines = new Line[4];
         initializeLines();
     }
 
     /**
-     * Initializes the lines that form the edges of the rectangle.
+     * Initializes the corners and the lines that form the edges of the rectangle.
+     * The lines share the corner points, so moving the corners moves the lines as well.
      */
     private void initializeLines() {
-        lines[0] = new Line(getUpperLeft(), getUpperRight());
-        lines[1] = new Line(getUpperRight(), getLowerRight());
-        lines[2] = new Line(getLowerRight(), getLowerLeft());
-        lines[3] = new Line(getLowerLeft(), getUpperLeft());
+        this.upperLeft = getUpperLeft();
+        this.upperRight = getUpperRight();
+        this.lowerRight = getLowerRight();
+        this.lowerLeft = getLowerLeft();
+        lines[0] = new Line(this.upperLeft, this.upperRight);
+        lines[1] = new Line(this.upperRight, this.lowerRight);
+        lines[2] = new Line(this.lowerRight, this.lowerLeft);
+        lines[3] = new Line(this.lowerLeft, this.upperLeft);
+    }
+
+    /**
+     * Moves the rectangle so that its upper-left corner is at the given position.
+     * The rectangle is updated in place: its width and height stay the same, and its edges
+     * and corners stay valid without allocating new ones.
+     *
+     * @param x the new x-coordinate of the upper-left corner
+     * @param y the new y-coordinate of the upper-left corner
+     */
+    public void setPosition(double x, double y) {
+        this.minx = x;
+        this.miny = y;
+        this.maxX = x + this.width;
+        this.maxy = y + this.height;
+        this.upperLeft.setX(this.minx);
+        this.upperLeft.setY(this.miny);
+        this.upperRight.setX(this.maxX);
+        this.upperRight.setY(this.miny);
+        this.lowerRight.setX(this.maxX);
+        this.lowerRight.setY(this.maxy);
+        this.lowerLeft.setX(this.minx);
+        this.lowerLeft.setY(this.maxy);
+    }
+
+    /**
+     * Moves the rectangle in place by the given amounts.
+     *
+     * @param dx the amount to move along the x axis
+     * @param dy the amount to move along the y axis
+     */
+    public void translate(double dx, double dy) {
+        setPosition(this.minx + dx, this.miny + dy);
     }
 
     /**
@@ -114,6 +178,331 @@ public class Rectangle {
         return points;
     }
 
+    /**
+     * Finds where a segment first meets the edges of the rectangle, using the slab method.
+     * The segment runs from (x0, y0) to (x0 + dx, y0 + dy). If it starts inside the rectangle,
+     * the point where it leaves the rectangle is reported instead, like getCollisionPoint would.
+     * Only primitives are used, so the query allocates nothing.
+     *
+     * @param x0  the x-coordinate of the segment start
+     * @param y0  the y-coordinate of the segment start
+     * @param dx  the x extent of the segment
+     * @param dy  the y extent of the segment
+     * @param out the hit to fill in, left untouched on a miss
+     * @return the parameter of the hit between 0 and 1, or -1 if the segment misses the rectangle
+     */
+    public double slabIntersection(double x0, double y0, double dx, double dy, RayHit out) {
+        double tEnter = Double.NEGATIVE_INFINITY;
+        double tExit = Double.POSITIVE_INFINITY;
+        int enterEdge = NO_EDGE;
+        int exitEdge = NO_EDGE;
+        if (dx == 0) {
+            if (x0 < minx || x0 > maxX) {
+                return -1;
+            }
+        } else {
+            double tMinx = (minx - x0) / dx;
+            double tMaxX = (maxX - x0) / dx;
+            if (dx > 0) {
+                tEnter = tMinx;
+                enterEdge = LEFT;
+                tExit = tMaxX;
+                exitEdge = RIGHT;
+            } else {
+                tEnter = tMaxX;
+                enterEdge = RIGHT;
+                tExit = tMinx;
+                exitEdge = LEFT;
+            }
+        }
+        if (dy == 0) {
+            if (y0 < miny || y0 > maxy) {
+                return -1;
+            }
+        } else {
+            double tMiny = (miny - y0) / dy;
+            double tMaxy = (maxy - y0) / dy;
+            double near = dy > 0 ? tMiny : tMaxy;
+            double far = dy > 0 ? tMaxy : tMiny;
+            if (near > tEnter) {
+                tEnter = near;
+                enterEdge = dy > 0 ? TOP : BOTTOM;
+            }
+            if (far < tExit) {
+                tExit = far;
+                exitEdge = dy > 0 ? BOTTOM : TOP;
+            }
+        }
+        if (tEnter > tExit) {
+            return -1;
+        }
+        if (tEnter >= 0) {
+            if (tEnter > 1) {
+                return -1;
+            }
+            out.set(tEnter, enterEdge);
+            return tEnter;
+        }
+        // The segment starts inside the rectangle
+        if (tExit < 0 || tExit > 1 || exitEdge == NO_EDGE) {
+            return -1;
+        }
+        out.set(tExit, exitEdge);
+        return tExit;
+    }
+
+    /**
+     * Finds when a circle moving along a segment first touches the rectangle.
+     * The circle's center runs from (x0, y0) to (x0 + dx, y0 + dy). This is the same as
+     * casting the segment against the rectangle grown by the radius on every side, with
+     * rounded corners: the two grown boxes are tested with the slab method and the four
+     * corners as circles. A circle that already touches the rectangle is hit at once if it
+     * moves further in, and ignored if it moves out, so it can never get stuck.
+     *
+     * @param x0     the x-coordinate of the circle's center at the start
+     * @param y0     the y-coordinate of the circle's center at the start
+     * @param dx     the x extent of the movement
+     * @param dy     the y extent of the movement
+     * @param radius the radius of the circle
+     * @param out    the hit to fill in, left untouched on a miss
+     * @return the time of impact between 0 and 1, or -1 if the circle never touches the rectangle
+     */
+    public double sweptCircleIntersection(double x0, double y0, double dx, double dy, double radius,
+                                          RayHit out) {
+        double nearestX = Math.max(minx, Math.min(x0, maxX));
+        double nearestY = Math.max(miny, Math.min(y0, maxy));
+        double awayX = x0 - nearestX;
+        double awayY = y0 - nearestY;
+        if (awayX * awayX + awayY * awayY <= radius * radius) {
+            return touchingCircle(x0, y0, dx, dy, nearestX, nearestY, out);
+        }
+
+        // Quick rejection against the grown box with square corners. A center that starts
+        // outside the rounded shape but inside that box is already in one of its corner squares.
+        boolean startsInCorner = Math.abs(awayX) <= radius && Math.abs(awayY) <= radius;
+        double t;
+        if (!startsInCorner) {
+            t = boxEntry(minx - radius, miny - radius, maxX + radius, maxy + radius, x0, y0, dx, dy, out);
+            if (t < 0) {
+                return -1;
+            }
+            double x = x0 + t * dx;
+            double y = y0 + t * dy;
+            if (x >= minx && x <= maxX || y >= miny && y <= maxy) {
+                // Entered through a flat side
+                return t;
+            }
+        }
+
+        // Entered through a corner square: the rounded corner or a side further along may be hit
+        double best = -1;
+        int bestEdge = NO_EDGE;
+        t = boxEntry(minx - radius, miny, maxX + radius, maxy, x0, y0, dx, dy, out);
+        if (t >= 0) {
+            best = t;
+            bestEdge = out.getEdge();
+        }
+        t = boxEntry(minx, miny - radius, maxX, maxy + radius, x0, y0, dx, dy, out);
+        if (t >= 0 && (best < 0 || t < best)) {
+            best = t;
+            bestEdge = out.getEdge();
+        }
+        for (int corner = UPPER_LEFT; corner <= LOWER_LEFT; corner++) {
+            double cornerX = corner == UPPER_LEFT || corner == LOWER_LEFT ? minx : maxX;
+            double cornerY = corner == UPPER_LEFT || corner == UPPER_RIGHT ? miny : maxy;
+            t = circleEntry(cornerX, cornerY, radius, x0, y0, dx, dy);
+            if (t >= 0 && (best < 0 || t < best)) {
+                best = t;
+                bestEdge = corner;
+            }
+        }
+        if (best < 0) {
+            return -1;
+        }
+        out.set(best, bestEdge);
+        return best;
+    }
+
+    /**
+     * Handles a circle that already touches the rectangle at the start of its movement.
+     *
+     * @param x0       the x-coordinate of the circle's center
+     * @param y0       the y-coordinate of the circle's center
+     * @param dx       the x extent of the movement
+     * @param dy       the y extent of the movement
+     * @param nearestX the x-coordinate of the rectangle point nearest to the center
+     * @param nearestY the y-coordinate of the rectangle point nearest to the center
+     * @param out      the hit to fill in
+     * @return 0 if the circle is hit immediately, or -1 if it is moving away
+     */
+    private double touchingCircle(double x0, double y0, double dx, double dy, double nearestX, double nearestY,
+                                  RayHit out) {
+        int edge;
+        if (x0 > minx && x0 < maxX && y0 > miny && y0 < maxy) {
+            // The center itself is inside: report the nearest side
+            double toLeft = x0 - minx;
+            double toRight = maxX - x0;
+            double toTop = y0 - miny;
+            double toBottom = maxy - y0;
+            double nearest = Math.min(Math.min(toLeft, toRight), Math.min(toTop, toBottom));
+            if (nearest == toTop) {
+                edge = TOP;
+            } else if (nearest == toBottom) {
+                edge = BOTTOM;
+            } else if (nearest == toLeft) {
+                edge = LEFT;
+            } else {
+                edge = RIGHT;
+            }
+            out.set(0, edge);
+            return 0;
+        }
+        if (dx * (x0 - nearestX) + dy * (y0 - nearestY) >= 0) {
+            return -1;
+        }
+        boolean onLeft = nearestX == minx && x0 <= minx;
+        boolean onRight = nearestX == maxX && x0 >= maxX;
+        boolean onTop = nearestY == miny && y0 <= miny;
+        boolean onBottom = nearestY == maxy && y0 >= maxy;
+        if (onTop && onLeft) {
+            edge = UPPER_LEFT;
+        } else if (onTop && onRight) {
+            edge = UPPER_RIGHT;
+        } else if (onBottom && onRight) {
+            edge = LOWER_RIGHT;
+        } else if (onBottom && onLeft) {
+            edge = LOWER_LEFT;
+        } else if (onTop) {
+            edge = TOP;
+        } else if (onBottom) {
+            edge = BOTTOM;
+        } else if (onLeft) {
+            edge = LEFT;
+        } else {
+            edge = RIGHT;
+        }
+        out.set(0, edge);
+        return 0;
+    }
+
+    /**
+     * Returns the parameter at which a segment that starts outside a box enters it.
+     *
+     * @param left   the left side of the box
+     * @param top    the top side of the box
+     * @param right  the right side of the box
+     * @param bottom the bottom side of the box
+     * @param x0     the x-coordinate of the segment start
+     * @param y0     the y-coordinate of the segment start
+     * @param dx     the x extent of the segment
+     * @param dy     the y extent of the segment
+     * @param out    the hit to fill in with the entry parameter and the side entered
+     * @return the entry parameter between 0 and 1, or -1 if the segment misses the box
+     */
+    private static double boxEntry(double left, double top, double right, double bottom,
+                                   double x0, double y0, double dx, double dy, RayHit out) {
+        double tEnter = 0;
+        double tExit = 1;
+        int edge = NO_EDGE;
+        if (dx == 0) {
+            if (x0 < left || x0 > right) {
+                return -1;
+            }
+        } else {
+            double near = ((dx > 0 ? left : right) - x0) / dx;
+            double far = ((dx > 0 ? right : left) - x0) / dx;
+            if (near >= tEnter) {
+                tEnter = near;
+                edge = dx > 0 ? LEFT : RIGHT;
+            }
+            tExit = Math.min(tExit, far);
+        }
+        if (dy == 0) {
+            if (y0 < top || y0 > bottom) {
+                return -1;
+            }
+        } else {
+            double near = ((dy > 0 ? top : bottom) - y0) / dy;
+            double far = ((dy > 0 ? bottom : top) - y0) / dy;
+            if (near > tEnter || (edge == NO_EDGE && near >= tEnter)) {
+                tEnter = near;
+                edge = dy > 0 ? TOP : BOTTOM;
+            }
+            tExit = Math.min(tExit, far);
+        }
+        if (tEnter > tExit || edge == NO_EDGE) {
+            return -1;
+        }
+        out.set(tEnter, edge);
+        return tEnter;
+    }
+
+    /**
+     * Returns the parameter at which a segment that starts outside a circle enters it.
+     *
+     * @param cx     the x-coordinate of the circle's center
+     * @param cy     the y-coordinate of the circle's center
+     * @param radius the radius of the circle
+     * @param x0     the x-coordinate of the segment start
+     * @param y0     the y-coordinate of the segment start
+     * @param dx     the x extent of the segment
+     * @param dy     the y extent of the segment
+     * @return the entry parameter between 0 and 1, or -1 if the segment misses the circle
+     */
+    private static double circleEntry(double cx, double cy, double radius,
+                                      double x0, double y0, double dx, double dy) {
+        double fx = x0 - cx;
+        double fy = y0 - cy;
+        double a = dx * dx + dy * dy;
+        if (a == 0) {
+            return -1;
+        }
+        double halfB = fx * dx + fy * dy;
+        double c = fx * fx + fy * fy - radius * radius;
+        double discriminant = halfB * halfB - a * c;
+        if (halfB > 0 || discriminant < 0) {
+            return -1;
+        }
+        double t = (-halfB - Math.sqrt(discriminant)) / a;
+        return t >= 0 && t <= 1 ? t : -1;
+    }
+
+    /**
+     * Returns the point where a query found by slabIntersection or sweptCircleIntersection
+     * touches the rectangle. The coordinate across the edge is taken from the rectangle itself,
+     * so the point lies exactly on the edge, and corner hits return the corner.
+     *
+     * @param x0   the x-coordinate of the segment start
+     * @param y0   the y-coordinate of the segment start
+     * @param dx   the x extent of the segment
+     * @param dy   the y extent of the segment
+     * @param t    the parameter of the hit
+     * @param edge the edge or corner that was hit
+     * @return the point on the rectangle
+     */
+    public Point pointOnEdge(double x0, double y0, double dx, double dy, double t, int edge) {
+        switch (edge) {
+            case TOP:
+                return new Point(Math.max(minx, Math.min(x0 + t * dx, maxX)), miny);
+            case BOTTOM:
+                return new Point(Math.max(minx, Math.min(x0 + t * dx, maxX)), maxy);
+            case LEFT:
+                return new Point(minx, Math.max(miny, Math.min(y0 + t * dy, maxy)));
+            case RIGHT:
+                return new Point(maxX, Math.max(miny, Math.min(y0 + t * dy, maxy)));
+            case UPPER_LEFT:
+                return new Point(minx, miny);
+            case UPPER_RIGHT:
+                return new Point(maxX, miny);
+            case LOWER_RIGHT:
+                return new Point(maxX, maxy);
+            case LOWER_LEFT:
+                return new Point(minx, maxy);
+            default:
+                return new Point(x0 + t * dx, y0 + t * dy);
+        }
+    }
+
     /**
      * Checks if the rectangle intersects with a line.
      *
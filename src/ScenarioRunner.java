@@ -0,0 +1,342 @@
+import Gameps.Game;
+import Gameps.HeadlessDisplay;
+import Gameps.LatencyHistogram;
+import Gameps.LevelFile;
+import Gameps.Palette;
+import Gameps.TickKeyboard;
+import Gameps.Velocity;
+import Geometry.Point;
+import Geometry.Rectangle;
+import sprites.Ball;
+import sprites.Paddle;
+import sprites.Sprite;
+import sprites.SpriteCollection;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * The ScenarioRunner class runs canned game scenarios with no display, as fast as the CPU
+ * allows, and reports how many simulation steps per second the game sustains under each load.
+ * The load of a canned scenario stays the same for the whole run: the paddle steers towards the
+ * lowest ball, and every ball the game loses is replaced between the steps, so a game only ends
+ * when its level is cleared. Every run of a scenario plays out the same way.
+ * A game recorded with Game.startRecording() can be run as a scenario too, with --replay=FILE,
+ * so real play sessions can serve as workloads.
+ * Usage: ScenarioRunner [--steps=N] [--warmup=N] [--replay=FILE]... [stock] [wall] [storm]
+ */
+public class ScenarioRunner {
+    private static final int DEFAULT_STEPS = 20000;
+    private static final int DEFAULT_WARMUP = 5000;
+    private static final int WALL_COLUMNS = 100;
+    private static final int WALL_ROWS = 100;
+    private static final int STORM_BALLS = 5000;
+    private static final int BALL_SPEED = 7;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final List<GarbageCollectorMXBean> COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * The canned scenarios.
+     */
+    private enum Scenario {
+        /** The stock level of Game.initialize, with three balls. */
+        STOCK,
+        /** A dense wall of 10,000 small blocks, with three balls. */
+        WALL,
+        /** The stock layout with 5,000 balls, its blocks scoring on every hit but never removed. */
+        STORM
+    }
+
+    /**
+     * Runs the scenarios named on the command line, or all of them, and prints a report line
+     * for each.
+     *
+     * @param args the options and the names of the scenarios to run
+     * @throws IOException if a recording cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int steps = DEFAULT_STEPS;
+        int warmup = DEFAULT_WARMUP;
+        List<Scenario> scenarios = new ArrayList<>();
+        List<String> replays = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--steps=")) {
+                steps = Integer.parseInt(arg.substring("--steps=".length()));
+            } else if (arg.startsWith("--warmup=")) {
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--replay=")) {
+                replays.add(arg.substring("--replay=".length()));
+            } else {
+                scenarios.add(Scenario.valueOf(arg.toUpperCase(Locale.ROOT)));
+            }
+        }
+        if (scenarios.isEmpty() && replays.isEmpty()) {
+            scenarios.addAll(List.of(Scenario.values()));
+        }
+        System.out.printf("%-12s %6s %8s %10s %9s %9s %9s %9s %10s%n",
+                "name", "games", "steps", "ticks/s", "p50 ms", "p99 ms", "max ms", "gc ms", "alloc MB");
+        for (Scenario scenario : scenarios) {
+            String name = scenario.name().toLowerCase(Locale.ROOT);
+            run(name, () -> build(scenario), warmup, false);
+            run(name, () -> build(scenario), steps, true);
+        }
+        for (String file : replays) {
+            byte[] recording = Files.readAllBytes(Paths.get(file));
+            String name = Paths.get(file).getFileName().toString();
+            run(name, () -> replay(recording), warmup, false);
+            run(name, () -> replay(recording), steps, true);
+        }
+    }
+
+    /**
+     * Runs a scenario for a number of steps, starting a fresh game whenever one is over or its
+     * recording ends, so the load never runs out. Only the steps themselves are timed and counted
+     * towards the allocation and the collection time, not building the games nor the work of the
+     * steady player between the steps.
+     *
+     * @param name    the name of the scenario in the report
+     * @param builder builds a fresh game of the scenario
+     * @param steps   the number of steps to run
+     * @param report  true to print the report line, false for a warmup run
+     */
+    private static void run(String name, Supplier<Session> builder, int steps, boolean report) {
+        LatencyHistogram ticks = new LatencyHistogram();
+        long busyNanos = 0;
+        long allocated = 0;
+        long gc = 0;
+        int games = 1;
+        Session session = builder.get();
+        boolean fresh = true;
+        for (int i = 0; i < steps; i++) {
+            if (session.game.isOver()) {
+                session = builder.get();
+                games++;
+                fresh = true;
+            }
+            if (session.player != null) {
+                session.player.aim();
+            }
+            long gcBefore = gcMillis();
+            long allocBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long ran = session.game.runHeadless(1);
+            long elapsed = System.nanoTime() - start;
+            if (ran == 0) {
+                // The recording ended, so the step did not run
+                if (fresh) {
+                    throw new IllegalArgumentException("the recording of " + name + " has no steps");
+                }
+                session = builder.get();
+                games++;
+                fresh = true;
+                i--;
+                continue;
+            }
+            fresh = false;
+            allocated += allocatedBytes() - allocBefore;
+            gc += gcMillis() - gcBefore;
+            ticks.record(elapsed);
+            busyNanos += elapsed;
+        }
+        if (report) {
+            System.out.printf(Locale.ROOT, "%-12s %6d %8d %10.0f %9.3f %9.3f %9.3f %9d %10.1f%n",
+                    name, games, steps, steps * 1e9 / busyNanos,
+                    ticks.getPercentile(50) / NANOS_PER_MILLI, ticks.getPercentile(99) / NANOS_PER_MILLI,
+                    ticks.getMax() / NANOS_PER_MILLI, gc,
+                    allocated / (1024.0 * 1024.0));
+        }
+    }
+
+    /**
+     * Builds a fresh game for a scenario, on a headless display with a steady player at the
+     * paddle.
+     *
+     * @param scenario the scenario to build
+     * @return the game and its player, ready to run
+     */
+    private static Session build(Scenario scenario) {
+        Game game = new Game();
+        game.setProfiling(false);
+        HeadlessDisplay display = new HeadlessDisplay(800, 600);
+        SteadyPlayer player = new SteadyPlayer();
+        switch (scenario) {
+            case WALL:
+                game.addBall(new Point(400, 500), 6, Color.blue, Velocity.fromAngleAndSpeed(65, BALL_SPEED));
+                game.addBall(new Point(400, 500), 6, Color.red, Velocity.fromAngleAndSpeed(70, BALL_SPEED));
+                game.addBall(new Point(400, 500), 6, Color.yellow, Velocity.fromAngleAndSpeed(190, BALL_SPEED));
+                game.initializeArena(display, player);
+                double width = 760.0 / WALL_COLUMNS;
+                double height = 400.0 / WALL_ROWS;
+                for (int row = 0; row < WALL_ROWS; row++) {
+                    Color color = Palette.blockRow(row % Palette.blockRowCount());
+                    for (int col = 0; col < WALL_COLUMNS; col++) {
+                        game.addLevelBlock(new Rectangle(new Point(20 + col * width, 60 + row * height),
+                                width, height), color);
+                    }
+                }
+                break;
+            case STORM:
+                game.initializeArena(display, player);
+                // The blocks of the stock level, which stay, so the balls never clear the level
+                int[] blocksInRow = {12, 11, 10, 9, 8, 7};
+                for (int row = 0; row < Palette.blockRowCount(); row++) {
+                    for (int col = 0; col < blocksInRow[row]; col++) {
+                        game.addLevelBlock(new Rectangle(new Point(50 + col * 50, 100 + row * 20), 50, 20),
+                                Palette.blockRow(row), LevelFile.SCORING);
+                    }
+                }
+                // A block below the death region, which no ball reaches, keeps the game from being won
+                game.addLevelBlock(new Rectangle(new Point(380, 700), 40, 20), Color.gray);
+                Random random = new Random(42);
+                for (int i = 0; i < STORM_BALLS; i++) {
+                    game.addBall(new Point(30 + random.nextDouble() * 740, 260 + random.nextDouble() * 280), 6,
+                            Color.blue, Velocity.fromAngleAndSpeed(random.nextDouble() * 360, BALL_SPEED));
+                }
+                break;
+            default:
+                game.initialize(display, player);
+                break;
+        }
+        player.attach(game);
+        return new Session(game, player);
+    }
+
+    /**
+     * Builds a fresh game from a recording, which is played by its recorded keys alone.
+     *
+     * @param recording the recording
+     * @return the game, ready to run
+     */
+    private static Session replay(byte[] recording) {
+        try {
+            Game game = Game.replay(new ByteArrayInputStream(recording));
+            game.setProfiling(false);
+            return new Session(game, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the total time every garbage collector has spent collecting so far.
+     *
+     * @return the collection time in milliseconds
+     */
+    private static long gcMillis() {
+        long total = 0;
+        for (int i = 0; i < COLLECTORS.size(); i++) {
+            GarbageCollectorMXBean bean = COLLECTORS.get(i);
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of bytes the current thread has allocated so far, or 0 if the JVM
+     * cannot tell.
+     *
+     * @return the allocated bytes
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    /**
+     * A game of a scenario, with the steady player at its paddle, if it has one.
+     */
+    private static final class Session {
+        private final Game game;
+        private final SteadyPlayer player;
+
+        /**
+         * Constructs a Session.
+         *
+         * @param game   the game
+         * @param player the steady player at its paddle, or null if the game plays by itself
+         */
+        Session(Game game, SteadyPlayer player) {
+            this.game = game;
+            this.player = player;
+        }
+    }
+
+    /**
+     * SteadyPlayer keeps the load of a scenario steady. Before every step, aim() puts a fresh
+     * ball in play for every one the game has lost, and holds the key that moves the paddle
+     * towards the lowest ball. It runs between the steps, so its own work is never timed, and
+     * it draws its balls from a fixed seed, so every run plays out the same way.
+     */
+    private static final class SteadyPlayer extends TickKeyboard {
+        private final Random random = new Random(7);
+        private Game game;
+        private Paddle paddle;
+        private int balls;
+        private boolean left;
+        private boolean right;
+
+        /**
+         * Starts playing a game, keeping as many balls in play as it has now.
+         *
+         * @param built the game, with its arena initialized and its balls added
+         */
+        void attach(Game built) {
+            this.game = built;
+            this.balls = built.getRemainingBalls();
+            SpriteCollection sprites = built.getSprites();
+            for (int i = 0; i < sprites.size(); i++) {
+                if (sprites.getSprite(i) instanceof Paddle) {
+                    this.paddle = (Paddle) sprites.getSprite(i);
+                }
+            }
+        }
+
+        /**
+         * Replaces the lost balls, then picks the key to hold in the next step.
+         */
+        void aim() {
+            for (int i = this.game.getRemainingBalls(); i < this.balls; i++) {
+                // Launched upwards from above the paddle, away from the walls
+                this.game.addBall(new Point(400, 500), 6, Color.blue,
+                        Velocity.fromAngleAndSpeed(this.random.nextDouble() * 90 - 45, BALL_SPEED));
+            }
+            double lowest = Double.NEGATIVE_INFINITY;
+            double target = 0;
+            SpriteCollection sprites = this.game.getSprites();
+            for (int i = 0; i < sprites.size(); i++) {
+                Sprite sprite = sprites.getSprite(i);
+                if (sprite instanceof Ball && ((Ball) sprite).getCenter().getY() > lowest) {
+                    lowest = ((Ball) sprite).getCenter().getY();
+                    target = ((Ball) sprite).getCenter().getX();
+                }
+            }
+            Rectangle rect = this.paddle.getCollisionRectangle();
+            double center = rect.getMinx() + rect.getWidth() / 2;
+            // Close enough when the ball is over the middle half of the paddle
+            this.left = target < center - rect.getWidth() / 4;
+            this.right = target > center + rect.getWidth() / 4;
+        }
+
+        @Override
+        public void nextTick() {
+            setKeys(this.left, this.right);
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package sprites;
 
+import Gameps.Collidable;
 import Gameps.CollisionInfo;
+import Gameps.FrameProfiler;
 import Gameps.Game;
 import Gameps.GameEnvironment;
+import Gameps.PreparedCollision;
+import Gameps.WorldSnapshot;
 import Gameps.Velocity;
 import Geometry.Line;
 import biuoop.DrawSurface;
@@ -17,7 +21,12 @@ import java.awt.Color;
  * ID 328285705
  */
 public class Ball implements Sprite {
+    /**
+     * The number of collisions a ball resolves within a single step, unless set otherwise.
+     */
+    public static final int DEFAULT_MAX_BOUNCES_PER_TICK = 4;
     private Geometry.Point center;
+    private Geometry.Point previousCenter;
     private int radius;
     private java.awt.Color color;
     private Velocity v;
@@ -26,6 +35,12 @@ public class Ball implements Sprite {
     private int minX, minY, maxX, maxY;
     private GameEnvironment environment;
     private double epsilon = 0.2;
+    private int maxBouncesPerTick = DEFAULT_MAX_BOUNCES_PER_TICK;
+    // The first collision query of the next step, when it was prepared ahead of time
+    private PreparedCollision prepared;
+    private Geometry.Point preparedCenter;
+    private Velocity preparedVelocity;
+    private double preparedDt;
 
     /**
      * Constructor to initialize a ball with a given center point, radius, and color.
@@ -36,6 +51,7 @@ public class Ball implements Sprite {
      */
     public Ball(Geometry.Point center, int r, java.awt.Color color) {
         this.center = center;
+        this.previousCenter = center;
         this.radius = r;
         this.color = color;
         this.v = new Velocity(0, 0);
@@ -120,6 +136,30 @@ public class Ball implements Sprite {
         surface.fillCircle((int) center.getX(), (int) center.getY(), radius);
     }
 
+    /**
+     * Draws the ball part of the way between where it was before the last step and where it is now.
+     *
+     * @param surface the DrawSurface on which to draw the ball
+     * @param alpha   how far between the previous position (0) and the current position (1) to draw
+     */
+    @Override
+    public void drawOn(DrawSurface surface, double alpha) {
+        double x = previousCenter.getX() + alpha * (center.getX() - previousCenter.getX());
+        double y = previousCenter.getY() + alpha * (center.getY() - previousCenter.getY());
+        surface.setColor(color);
+        surface.fillCircle((int) x, (int) y, radius);
+    }
+
+    /**
+     * Copies the ball into a snapshot of the world.
+     *
+     * @param snapshot the snapshot to fill
+     */
+    @Override
+    public void writeTo(WorldSnapshot snapshot) {
+        snapshot.addBall((int) center.getX(), (int) center.getY(), radius, color);
+    }
+
     /**
      * set a color for a ball.
      *
@@ -157,39 +197,141 @@ public class Ball implements Sprite {
         return v;
     }
 
+    /**
+     * Returns the exact center of the ball.
+     *
+     * @return the center of the ball
+     */
+    public Geometry.Point getCenter() {
+        return this.center;
+    }
+
+    /**
+     * Sets how many collisions the ball may resolve within a single step.
+     * Whatever motion is left after the last allowed collision is dropped for that step.
+     *
+     * @param maxBouncesPerTick the maximum number of collisions per step, at least 1
+     */
+    public void setMaxBouncesPerTick(int maxBouncesPerTick) {
+        if (maxBouncesPerTick < 1) {
+            throw new IllegalArgumentException("a ball must be allowed at least one bounce per tick");
+        }
+        this.maxBouncesPerTick = maxBouncesPerTick;
+    }
+
     /**
      * Moves the ball one step, checking for collisions with the boundaries of the area.
+     * The whole ball, not only its center, is swept along the trajectory. After each collision
+     * the ball keeps moving with its new velocity for the rest of the step, so a fast ball in a
+     * corner or a narrow gap bounces several times within one step, up to the configured limit.
      */
     public void moveOneStep() {
-        // Calculate the trajectory based on current position and velocity
-        Line trajectory = new Line(this.center, this.v.applyToPoint(this.center));
-        CollisionInfo info = environment.getClosestCollision(trajectory);
-
-        if (info == null) {
-            // No collision, move to the new position
-            this.center = this.v.applyToPoint(this.center);
-        } else {
+        moveOneStep(1.0);
+    }
+
+    /**
+     * Moves the ball for the given time, resolving collisions the same way as moveOneStep().
+     *
+     * @param dt the time to move for, in frames of 1/60 of a second
+     */
+    public void moveOneStep(double dt) {
+        PreparedCollision early = takePrepared(dt);
+        this.previousCenter = this.center;
+        double remaining = dt;
+        for (int bounce = 0; bounce < this.maxBouncesPerTick; bounce++) {
+            // Calculate the trajectory for the rest of the step
+            Geometry.Point target = new Geometry.Point(this.center.getX() + remaining * this.v.getDx(),
+                    this.center.getY() + remaining * this.v.getDy());
+            CollisionInfo info;
+            if (bounce == 0 && early != null) {
+                info = environment.getClosestCollision(early);
+            } else {
+                Line trajectory = new Line(this.center, target);
+                info = environment.getClosestCollision(trajectory, this.radius);
+            }
+
+            if (info == null) {
+                // No collision, move to the new position
+                this.center = target;
+                return;
+            }
             // Handle collision
-            Geometry.Point collisionPoint = info.collisionPoint();
             if (info.collisionObject().getCollisionRectangle().isInsideRectangle(this.center)) {
+                // The collidable moved onto the ball, push the ball out above it
                 this.center = new Geometry.Point(center.getX(),
-                        info.collisionObject().getCollisionRectangle().getMiny() - 2);
-                this.v = info.collisionObject().hit(this, this.center, v);
+                        info.collisionObject().getCollisionRectangle().getMiny() - radius);
+                this.v = hit(info.collisionObject(), this.center);
                 return;
             }
-            double distance = trajectory.start().distance(collisionPoint);
-            if (distance == 0) {
-                this.v = info.collisionObject().hit(this, info.collisionPoint(), v);
-            } else {
-                Velocity newVelocity = info.collisionObject().hit(this, info.collisionPoint(), v);
-                if (newVelocity != null) {
-                    this.v = newVelocity;
-                }
-
-                // Move to the new position based on the updated velocity
-                this.center = this.v.applyToPoint(this.center);
+            // Move to the point of impact, bounce, and spend the rest of the step with the new velocity
+            double t = info.timeOfImpact();
+            this.center = new Geometry.Point(this.center.getX() + t * remaining * this.v.getDx(),
+                    this.center.getY() + t * remaining * this.v.getDy());
+            Velocity newVelocity = hit(info.collisionObject(), info.collisionPoint());
+            if (newVelocity != null) {
+                this.v = newVelocity;
             }
+            remaining *= 1 - t;
+            if (remaining <= 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lets a collidable respond to being hit by the ball, counting the hit, and timing the
+     * response if the game environment has a profiler.
+     *
+     * @param collidable     the collidable that was hit
+     * @param collisionPoint the point of the hit
+     * @return the new velocity of the ball
+     */
+    private Velocity hit(Collidable collidable, Geometry.Point collisionPoint) {
+        environment.getCounters().recordHit();
+        FrameProfiler profiler = environment.getProfiler();
+        if (profiler == null) {
+            return collidable.hit(this, collisionPoint, v);
         }
+        long start = System.nanoTime();
+        Velocity newVelocity = collidable.hit(this, collisionPoint, v);
+        profiler.addHit(System.nanoTime() - start);
+        return newVelocity;
+    }
+
+    /**
+     * Looks up the first collision of the next step ahead of time. Only the game environment
+     * and the ball's own fields are read, so many balls may prepare their steps in parallel.
+     *
+     * @param dt the time the next step will move for, in frames of 1/60 of a second
+     */
+    @Override
+    public void prepareTimePassed(double dt) {
+        if (this.environment == null) {
+            return;
+        }
+        Geometry.Point target = new Geometry.Point(this.center.getX() + dt * this.v.getDx(),
+                this.center.getY() + dt * this.v.getDy());
+        this.prepared = this.environment.prepareClosestCollision(new Line(this.center, target), this.radius);
+        this.preparedCenter = this.center;
+        this.preparedVelocity = this.v;
+        this.preparedDt = dt;
+    }
+
+    /**
+     * Returns the prepared first query of a step, and forgets it. A query prepared for another
+     * position, velocity or time is of no use and is dropped.
+     *
+     * @param dt the time the step moves for
+     * @return the prepared query, or null if there is no usable one
+     */
+    private PreparedCollision takePrepared(double dt) {
+        PreparedCollision early = this.prepared;
+        this.prepared = null;
+        if (early == null || this.preparedCenter != this.center || this.preparedVelocity != this.v
+                || this.preparedDt != dt) {
+            return null;
+        }
+        return early;
     }
 
     /**
@@ -233,11 +375,13 @@ public class Ball implements Sprite {
     }
 
     /**
-     * Moves the ball one step, checking for collisions with the specified rectangle.
+     * Moves the ball for the time that passed, checking for collisions.
+     *
+     * @param dt the time that passed, in frames of 1/60 of a second
      */
     @Override
-    public void timePassed() {
-        moveOneStep();
+    public void timePassed(double dt) {
+        moveOneStep(dt);
     }
 
     /**
@@ -12,8 +12,11 @@ import java.util.List;
 import Gameps.Game;
 import Gameps.Velocity;
 import Gameps.Collidable;
+import Gameps.HitDispatchEvent;
+import Gameps.HitDispatcher;
 import Gameps.HitListener;
 import Gameps.HitNotifier;
+import Gameps.Palette;
 
 
 /**
@@ -29,6 +32,8 @@ public class Block implements Collidable, Sprite, HitNotifier {
     private Color color;
     private Game game;
     private List<HitListener> hitListeners = new ArrayList<HitListener>();
+    // A copy of the listeners made whenever they change, so a hit never has to copy them
+    private HitListener[] listenerSnapshot = new HitListener[0];
 
     /**
      * Constructs a sprites.Block with the given rectangle and color.
@@ -82,9 +87,11 @@ public class Block implements Collidable, Sprite, HitNotifier {
     @Override
     public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
         Velocity newVelocity = currentVelocity;
+        boolean hitEdge = false;
         Line[] edges = rectangle.getLines();
         for (Line edge : edges) {
             if (edge.isPointOnLine(collisionPoint)) {
+                hitEdge = true;
                 // Check if the edge is vertical
                 if (Math.abs(edge.start().getX() - edge.end().getX()) < EPSILON) {
                     newVelocity = new Velocity(-newVelocity.getDx(), newVelocity.getDy());
@@ -94,15 +101,18 @@ public class Block implements Collidable, Sprite, HitNotifier {
                 if (Math.abs(edge.start().getY() - edge.end().getY()) < EPSILON) {
                     newVelocity = new Velocity(newVelocity.getDx(), -newVelocity.getDy());
                 }
-                // todo if you want that only block without the same color will remove;
-//                if (!this.ballColorMatch(hitter)) {
-                    this.notifyHit(hitter);
-                    hitter.setColor(this.color);
-//                }
-//                score++;
-//                this.removeFromGame(this.game);
             }
         }
+        // A corner lies on two edges, but it is still a single hit
+        if (hitEdge) {
+            // todo if you want that only block without the same color will remove;
+//            if (!this.ballColorMatch(hitter)) {
+                this.notifyHit(hitter);
+                hitter.setColor(this.color);
+//            }
+//            score++;
+//            this.removeFromGame(this.game);
+        }
         return newVelocity; // No change if the collision point is not on the edge
     }
 
@@ -112,20 +122,22 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @param surface the draw surface to draw on
      */
     public void drawOn(DrawSurface surface) {
-        int x = (int) rectangle.getUpperLeft().getX();
-        int y = (int) rectangle.getUpperLeft().getY();
+        int x = (int) rectangle.getMinx();
+        int y = (int) rectangle.getMiny();
         int width = (int) rectangle.getWidth();
         int height = (int) rectangle.getHeight();
         surface.setColor(color);
         surface.fillRectangle(x, y, width, height);
-        surface.setColor(Color.BLACK);
+        surface.setColor(Palette.OUTLINE);
         surface.drawRectangle(x, y, width, height);
     }
 
     /**
      * Called to notify the block that time has passed. Currently, it does nothing.
+     *
+     * @param dt the time that passed, in frames of 1/60 of a second
      */
-    public void timePassed() {
+    public void timePassed(double dt) {
         // Do nothing
     }
 
@@ -155,6 +167,16 @@ public class Block implements Collidable, Sprite, HitNotifier {
         return true;
     }
 
+    /**
+     * A block always looks the same, so it can be drawn on a cached layer.
+     *
+     * @return true
+     */
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
+
     /**
      * Returns the color of this object.
      *
@@ -177,18 +199,40 @@ public class Block implements Collidable, Sprite, HitNotifier {
     @Override
     public void addHitListener(HitListener hl) {
         hitListeners.add(hl);
+        listenerSnapshot = hitListeners.toArray(new HitListener[0]);
     }
 
     /**
-     * Notifies all registered hit listeners about a hit event.
+     * Reports a hit event. If the game batches hit events, the hit is recorded and the
+     * listeners hear about it at the end of the step, otherwise they are notified at once.
      *
      * @param hitter the ball that hits this object
      */
     private void notifyHit(Ball hitter) {
-        // Make a copy of the hitListeners before iterating over them.
-        List<HitListener> listeners = new ArrayList<>(this.hitListeners);
-        // Notify all listeners about a hit event:
-        for (HitListener hl : listeners) {
+        HitDispatcher dispatcher = this.game == null ? null : this.game.getHitDispatcher();
+        if (dispatcher != null) {
+            dispatcher.record(this, hitter);
+        } else {
+            HitDispatchEvent event = new HitDispatchEvent();
+            event.begin();
+            dispatchHit(hitter);
+            if (event.shouldCommit()) {
+                event.set(1, false);
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Notifies all registered hit listeners about a hit event now.
+     * The listeners are the ones registered at this moment; a listener may remove itself
+     * while it is being notified.
+     *
+     * @param hitter the ball that hit this object
+     */
+    public void dispatchHit(Ball hitter) {
+        // Iterate over the snapshot, which stays the same even if a listener removes itself
+        for (HitListener hl : this.listenerSnapshot) {
             hl.hitEvent(this, hitter);
         }
     }
@@ -196,5 +240,6 @@ public class Block implements Collidable, Sprite, HitNotifier {
     @Override
     public void removeHitListener(HitListener hl) {
         hitListeners.remove(hl);
+        listenerSnapshot = hitListeners.toArray(new HitListener[0]);
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import Geometry.Rectangle;
 import Gameps.Collidable;
 import Gameps.Game;
 import Gameps.Velocity;
+import Gameps.WorldSnapshot;
 import biuoop.DrawSurface;
 import biuoop.KeyboardSensor;
 
@@ -22,6 +23,7 @@ public class Paddle implements Sprite, Collidable {
     private Color color;
     private int speed;
     private double epsilon = 0.1;
+    private double previousX;
 
     /**
      * Constructs a new paddle with specified parameters.
@@ -36,40 +38,73 @@ public class Paddle implements Sprite, Collidable {
         this.color = color;
         this.keyboard = keyboard;
         this.speed = speed;
+        this.previousX = rectangle.getMinx();
     }
 
     /**
      * Moves the paddle left by a predefined speed.
      */
     public void moveLeft() {
-        double newX = this.rectangle.getUpperLeft().getX() - this.speed;
+        moveLeft(1);
+    }
+
+    /**
+     * Moves the paddle left by its speed over the given time.
+     *
+     * @param dt the time that passed, in frames of 1/60 of a second
+     */
+    private void moveLeft(double dt) {
+        double newX = this.rectangle.getMinx() - this.speed * dt;
         if (newX + this.rectangle.getWidth() <= 20) { // Assuming left wall is at x = 0
             newX = 780 - this.rectangle.getWidth(); // Assuming right wall is at x = 800
+            this.previousX = newX; // Do not draw the paddle sliding across the screen
         }
-        this.rectangle = new Rectangle(new Point(newX, this.rectangle.getUpperLeft().getY()),
-                this.rectangle.getWidth(), this.rectangle.getHeight());
+        this.rectangle.setPosition(newX, this.rectangle.getMiny());
     }
 
     /**
      * Moves the paddle right by a predefined speed.
      */
     public void moveRight() {
-        double newX = this.rectangle.getUpperLeft().getX() + this.speed;
+        moveRight(1);
+    }
+
+    /**
+     * Moves the paddle right by its speed over the given time.
+     *
+     * @param dt the time that passed, in frames of 1/60 of a second
+     */
+    private void moveRight(double dt) {
+        double newX = this.rectangle.getMinx() + this.speed * dt;
         if (newX >= 780) { // Assuming right wall is at x = 800
             newX = 20; // Assuming left wall is at x = 0
+            this.previousX = newX; // Do not draw the paddle sliding across the screen
         }
-        this.rectangle = new Rectangle(new Point(newX, this.rectangle.getUpperLeft().getY()),
-                this.rectangle.getWidth(), this.rectangle.getHeight());
+        this.rectangle.setPosition(newX, this.rectangle.getMiny());
+    }
+
+    /**
+     * Places the paddle at a position at once, without drawing it sliding there.
+     *
+     * @param x the x-coordinate of the upper-left corner of the paddle
+     * @param y the y-coordinate of the upper-left corner of the paddle
+     */
+    public void setPosition(double x, double y) {
+        this.rectangle.setPosition(x, y);
+        this.previousX = x;
     }
 
     /**
      * Checks keyboard input and moves the paddle accordingly.
+     *
+     * @param dt the time that passed, in frames of 1/60 of a second
      */
-    public void timePassed() {
+    public void timePassed(double dt) {
+        this.previousX = this.rectangle.getMinx();
         if (keyboard.isPressed(KeyboardSensor.LEFT_KEY)) {
-            moveLeft();
+            moveLeft(dt);
         } else if (keyboard.isPressed(KeyboardSensor.RIGHT_KEY)) {
-            moveRight();
+            moveRight(dt);
         }
     }
 
@@ -80,10 +115,35 @@ public class Paddle implements Sprite, Collidable {
      */
     public void drawOn(DrawSurface d) {
         d.setColor(this.color);
-        d.fillRectangle((int) this.rectangle.getUpperLeft().getX(), (int) this.rectangle.getUpperLeft().getY(),
+        d.fillRectangle((int) this.rectangle.getMinx(), (int) this.rectangle.getMiny(),
                 (int) this.rectangle.getWidth(), (int) this.rectangle.getHeight());
     }
 
+    /**
+     * Draws the paddle part of the way between its previous and its current position.
+     *
+     * @param d     the draw surface to draw on
+     * @param alpha how far between the previous position (0) and the current position (1) to draw
+     */
+    @Override
+    public void drawOn(DrawSurface d, double alpha) {
+        double x = this.previousX + alpha * (this.rectangle.getMinx() - this.previousX);
+        d.setColor(this.color);
+        d.fillRectangle((int) x, (int) this.rectangle.getMiny(),
+                (int) this.rectangle.getWidth(), (int) this.rectangle.getHeight());
+    }
+
+    /**
+     * Copies the paddle into a snapshot of the world.
+     *
+     * @param snapshot the snapshot to fill
+     */
+    @Override
+    public void writeTo(WorldSnapshot snapshot) {
+        snapshot.setPaddle((int) this.rectangle.getMinx(), (int) this.rectangle.getMiny(),
+                (int) this.rectangle.getWidth(), (int) this.rectangle.getHeight(), this.color);
+    }
+
     /**
      * Returns the collision rectangle representing the paddle's shape.
      *
@@ -103,7 +163,7 @@ public class Paddle implements Sprite, Collidable {
     @Override
     public Velocity hit(Ball b, Point collisionPoint, Velocity currentVelocity) {
         double regionWidth = this.rectangle.getWidth() / 5;
-        double hitX = collisionPoint.getX() - this.rectangle.getUpperLeft().getX();
+        double hitX = collisionPoint.getX() - this.rectangle.getMinx();
         // Calculate the hit region
         int region = (int) (hitX / regionWidth) + 1;
         switch (region) {
@@ -124,11 +184,12 @@ public class Paddle implements Sprite, Collidable {
 
     /**
      * Adds the paddle to the game environment.
+     * The paddle moves every frame, so it is registered as a dynamic collidable.
      *
      * @param game the game to add the paddle to
      */
     public void addToGame(Game game) {
-        game.addCollidable(this);
+        game.addDynamicCollidable(this);
         game.addSprite(this);
     }
 }
@@ -1,5 +1,6 @@
 package sprites;
 
+import Gameps.WorldSnapshot;
 import biuoop.DrawSurface;
 public interface Sprite {
     /**
@@ -12,8 +13,58 @@ public interface Sprite {
      */
     void drawOn(DrawSurface d);
 
+    /**
+     * Draws the sprite on the surface, part of the way between its previous and its current
+     * state. Sprites that do not move simply draw their current state.
+     *
+     * @param d     the surface to draw the sprite on
+     * @param alpha how far between the previous state (0) and the current state (1) to draw
+     */
+    default void drawOn(DrawSurface d, double alpha) {
+        drawOn(d);
+    }
+
+    /**
+     * Checks if the sprite looks the same in every frame until it is removed, like a block,
+     * so it can be drawn once onto a cached layer instead of in every frame.
+     *
+     * @return true if the sprite never changes its looks, false otherwise
+     */
+    default boolean isStatic() {
+        return false;
+    }
+
+    /**
+     * Copies what is needed to draw the sprite into a snapshot of the world, so it can be drawn
+     * on another thread. Sprites that the snapshot has no place for copy nothing.
+     *
+     * @param snapshot the snapshot to fill
+     */
+    default void writeTo(WorldSnapshot snapshot) {
+    }
+
     /**
      * Notifies the sprite that time has passed.
+     *
+     * @param dt the time that passed, in frames of 1/60 of a second
+     */
+    void timePassed(double dt);
+
+    /**
+     * Lets the sprite do the read-only part of its next timePassed(dt) ahead of time, such as
+     * looking up collisions. It may be called on several sprites at once from different
+     * threads, so it must not change anything other sprites can see. Sprites with nothing
+     * to prepare do nothing.
+     *
+     * @param dt the time that is about to pass, in frames of 1/60 of a second
+     */
+    default void prepareTimePassed(double dt) {
+    }
+
+    /**
+     * Notifies the sprite that one frame of 1/60 of a second has passed.
      */
-    void timePassed();
+    default void timePassed() {
+        timePassed(1);
+    }
 }
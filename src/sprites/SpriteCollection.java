@@ -1,50 +1,216 @@
 package sprites;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import Gameps.ObjectType;
+import Gameps.Population;
+import Gameps.WorldSnapshot;
 import biuoop.DrawSurface;
 /** Author: Ofek Mazor
  * ID: 328285705
  * Represents a collection of sprites.
  * holds a collection of sprites and provides methods to add, remove, and draw them.
+ * With an update pool set, every step runs in two phases: first all sprites prepare their step
+ * in parallel against the world as it is, then they take their steps one after another in the
+ * order they were added, exactly as without the pool.
+ * Every sprite remembers its position in the collection, so it is removed in constant time by
+ * moving the last sprite into its place. Sprites removed during a step are only taken out at
+ * the end of the step, so the step walks the collection itself instead of a copy of it.
  */
 public class SpriteCollection {
+    // The number of sprites a single parallel task prepares
+    private static final int PREPARE_BATCH = 64;
     private List<Sprite> sprites;
+    private Map<Sprite, Integer> positions;
+    private Set<Sprite> pendingRemovals;
+    private boolean updating;
+    // The live count of each kind of sprite, by ObjectType ordinal, and a read-only view of it
+    private int[] population;
+    private Population populationView;
+    private ForkJoinPool updatePool;
 
     /**
      * Constructs a sprites.SpriteCollection object.
      */
     public SpriteCollection() {
         this.sprites = new ArrayList<>();
+        this.positions = new IdentityHashMap<>();
+        this.pendingRemovals = new LinkedHashSet<>();
+        this.population = new int[ObjectType.values().length];
+        this.populationView = type -> this.population[type.ordinal()];
     }
 
     /**
-     * Adds a sprite to the collection.
+     * Adds a sprite to the collection. A sprite added during a step takes its first step in
+     * the next one. Adding a sprite that is already in the collection does nothing.
      *
      * @param s the sprite to add
      */
     public void addSprite(Sprite s) {
+        if (this.positions.containsKey(s)) {
+            return;
+        }
+        this.positions.put(s, this.sprites.size());
         this.sprites.add(s);
+        this.population[ObjectType.of(s).ordinal()]++;
+    }
+
+    /**
+     * Adds many sprites to the collection at once, in the order of the array, growing the
+     * collection once for the whole batch.
+     *
+     * @param batch the sprites to add
+     * @param count the number of sprites to add, from the start of the array
+     */
+    public void addSprites(Sprite[] batch, int count) {
+        if (count > this.sprites.size()) {
+            List<Sprite> grownSprites = new ArrayList<>(this.sprites.size() + count);
+            grownSprites.addAll(this.sprites);
+            this.sprites = grownSprites;
+            Map<Sprite, Integer> grownPositions = new IdentityHashMap<>(this.positions.size() + count);
+            grownPositions.putAll(this.positions);
+            this.positions = grownPositions;
+        }
+        for (int i = 0; i < count; i++) {
+            addSprite(batch[i]);
+        }
     }
 
     /**
-     * Removes a sprite from the collection.
+     * Removes a sprite from the collection. During a step the sprite is only taken out when
+     * the step ends, so every sprite that was there when it started still takes its step.
      *
      * @param s the sprite to remove
      */
     public void removeSprite(Sprite s) {
-        this.sprites.remove(s);
+        if (this.updating) {
+            this.pendingRemovals.add(s);
+        } else {
+            detach(s);
+        }
+    }
+
+    /**
+     * Checks if a sprite is in the collection. A sprite whose removal was requested during the
+     * current step no longer counts as being in it.
+     *
+     * @param s the sprite
+     * @return true if the sprite is in the collection
+     */
+    public boolean contains(Sprite s) {
+        return this.positions.containsKey(s) && !this.pendingRemovals.contains(s);
+    }
+
+    /**
+     * Takes a sprite out of the collection by moving the last sprite into its place.
+     *
+     * @param s the sprite to take out
+     */
+    private void detach(Sprite s) {
+        Integer index = this.positions.remove(s);
+        if (index == null) {
+            return;
+        }
+        int last = this.sprites.size() - 1;
+        Sprite moved = this.sprites.remove(last);
+        if (index != last) {
+            this.sprites.set(index, moved);
+            this.positions.put(moved, index);
+        }
+        this.population[ObjectType.of(s).ordinal()]--;
+    }
+
+    /**
+     * Sets the pool that prepares the sprites' steps in parallel, or null to update the sprites
+     * on the calling thread only. Either way the sprites end up in exactly the same state.
+     *
+     * @param updatePool the pool to prepare steps on, or null
+     */
+    public void setUpdatePool(ForkJoinPool updatePool) {
+        this.updatePool = updatePool;
+    }
+
+    /**
+     * Returns a read-only view of the live count of each kind of sprite in the collection.
+     *
+     * @return the population of the sprites
+     */
+    public Population getPopulation() {
+        return this.populationView;
     }
     /**
      * Calls timePassed() on all sprites in the collection.
      */
     public void notifyAllTimePassed() {
-        List<Sprite> spritesCopy = new ArrayList<>(this.sprites);
-        for (Sprite s : spritesCopy) {
-            s.timePassed();
+        notifyAllTimePassed(1);
+    }
+
+    /**
+     * Calls timePassed(dt) on all sprites in the collection.
+     *
+     * @param dt the time that passed, in frames of 1/60 of a second
+     */
+    public void notifyAllTimePassed(double dt) {
+        // Sprites added during the step are appended after the ones counted here
+        int count = this.sprites.size();
+        this.updating = true;
+        try {
+            if (this.updatePool != null && count > PREPARE_BATCH) {
+                this.updatePool.invoke(new PrepareTask(this.sprites, 0, count, dt));
+            }
+            for (int i = 0; i < count; i++) {
+                this.sprites.get(i).timePassed(dt);
+            }
+        } finally {
+            this.updating = false;
+            for (Sprite s : this.pendingRemovals) {
+                detach(s);
+            }
+            this.pendingRemovals.clear();
+        }
+    }
+
+    /**
+     * Puts the sprites of the collection in a new order, for restoring a saved game.
+     * Nothing changes unless the new order holds exactly the sprites of the collection.
+     *
+     * @param order the sprites in their new order
+     * @return true if the order was taken, false if it does not hold the same sprites
+     */
+    public boolean reorder(List<Sprite> order) {
+        if (this.updating || order.size() != this.sprites.size()) {
+            return false;
         }
+        Map<Sprite, Integer> newPositions = new IdentityHashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            Sprite s = order.get(i);
+            if (!this.positions.containsKey(s) || newPositions.put(s, i) != null) {
+                return false;
+            }
+        }
+        this.sprites.clear();
+        this.sprites.addAll(order);
+        this.positions = newPositions;
+        return true;
+    }
+
+    /**
+     * Returns the number of sprites in the collection, including any whose removal was
+     * requested during the current step.
+     *
+     * @return the number of sprites
+     */
+    public int size() {
+        return this.sprites.size();
     }
+
     public Sprite getSprite(int index) {
         return this.sprites.get(index);
     }
@@ -59,4 +225,82 @@ public class SpriteCollection {
             s.drawOn(d);
         }
     }
+
+    /**
+     * Draws all sprites in the collection on the specified surface, part of the way between
+     * their previous and their current state.
+     *
+     * @param d     the surface to draw the sprites on
+     * @param alpha how far between the previous state (0) and the current state (1) to draw
+     */
+    public void drawAllOn(DrawSurface d, double alpha) {
+        for (Sprite s : this.sprites) {
+            s.drawOn(d, alpha);
+        }
+    }
+
+    /**
+     * Draws only the sprites that are not static, part of the way between their previous and
+     * their current state. The static ones are expected to be on a cached layer already.
+     *
+     * @param d     the surface to draw the sprites on
+     * @param alpha how far between the previous state (0) and the current state (1) to draw
+     */
+    public void drawMovingOn(DrawSurface d, double alpha) {
+        for (Sprite s : this.sprites) {
+            if (!s.isStatic()) {
+                s.drawOn(d, alpha);
+            }
+        }
+    }
+
+    /**
+     * Copies every sprite into a snapshot of the world.
+     *
+     * @param snapshot the snapshot to fill
+     */
+    public void writeAllTo(WorldSnapshot snapshot) {
+        for (Sprite s : this.sprites) {
+            s.writeTo(snapshot);
+        }
+    }
+
+    /**
+     * Prepares the steps of a range of sprites, splitting the range between threads.
+     */
+    private static final class PrepareTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<Sprite> sprites;
+        private final int from;
+        private final int to;
+        private final double dt;
+
+        /**
+         * Constructs a task for the sprites in [from, to).
+         *
+         * @param sprites the sprites of the step
+         * @param from    the index of the first sprite
+         * @param to      the index after the last sprite
+         * @param dt      the time of the step
+         */
+        private PrepareTask(List<Sprite> sprites, int from, int to, double dt) {
+            this.sprites = sprites;
+            this.from = from;
+            this.to = to;
+            this.dt = dt;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= PREPARE_BATCH) {
+                for (int i = this.from; i < this.to; i++) {
+                    this.sprites.get(i).prepareTimePassed(this.dt);
+                }
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new PrepareTask(this.sprites, this.from, middle, this.dt),
+                    new PrepareTask(this.sprites, middle, this.to, this.dt));
+        }
+    }
 }
@@ -0,0 +1,198 @@
+package checks;
+
+import Gameps.CheckpointStore;
+import Gameps.Collidable;
+import Gameps.Game;
+import Gameps.HeadlessDisplay;
+import Gameps.ScriptedKeyboard;
+import Gameps.Velocity;
+import Geometry.Point;
+import Geometry.Rectangle;
+import sprites.Ball;
+import sprites.Sprite;
+import sprites.SpriteCollection;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * CheckpointCheck saves a game into a Gameps.CheckpointStore, then adds so many balls that the
+ * next snapshot outgrows the slots of the snapshot file, and checks that:
+ * the grown file restores the game exactly, so the restored game and the saved one go on alike;
+ * a crash after the large snapshot was written but before the file switched to the larger
+ * layout restores the snapshot before it.
+ * It exits with status 1 if any of them fails.
+ */
+public class CheckpointCheck {
+    // The snapshot file keeps the capacity of its slots right after its magic and version
+    private static final int CAPACITY_AT = 8;
+    private static final int BALLS = 2000;
+    private static final int STEPS = 500;
+    private static boolean failed;
+
+    /**
+     * Runs the checks and prints their results.
+     *
+     * @param args unused
+     * @throws IOException if the files of the store cannot be used
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("checkpoints");
+        Path snapshots = dir.resolve("game.snap");
+        Path journal = dir.resolve("game.jnl");
+        try {
+            Game saved = fresh();
+            saved.runHeadless(150);
+            CheckpointStore store = new CheckpointStore(snapshots, journal);
+            saved.setCheckpoints(store, Integer.MAX_VALUE);
+            String before = describe(saved);
+            int capacity = readCapacity(snapshots);
+
+            saved.runHeadless(100);
+            Random random = new Random(1);
+            for (int i = 0; i < BALLS; i++) {
+                Point center = new Point(40 + random.nextInt(720), 300 + random.nextInt(200));
+                saved.addBall(center, 5, Color.blue, Velocity.fromAngleAndSpeed(random.nextInt(360), 6));
+            }
+            store.save(saved);
+            String after = describe(saved);
+            saved.setCheckpoints(null, 0);
+            store.close();
+            check("the snapshot file grew", readCapacity(snapshots) > capacity);
+
+            // A crash before the header switched leaves the file with its old capacity
+            Path crashedSnapshots = dir.resolve("crashed.snap");
+            Path crashedJournal = dir.resolve("crashed.jnl");
+            Files.copy(snapshots, crashedSnapshots, StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(journal, crashedJournal, StandardCopyOption.REPLACE_EXISTING);
+            writeCapacity(crashedSnapshots, capacity);
+            check("a crash while growing restores the snapshot before",
+                    before.equals(describe(restore(crashedSnapshots, crashedJournal))));
+
+            Game restored = restore(snapshots, journal);
+            check("the grown file restores the game", after.equals(describe(restored)));
+            saved.runHeadless(STEPS);
+            restored.runHeadless(STEPS);
+            check("the restored game goes on like the saved one", describe(saved).equals(describe(restored)));
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Builds the stock game, with a paddle that stays still so every copy of it plays alike.
+     *
+     * @return the game
+     */
+    private static Game fresh() {
+        Game game = new Game();
+        game.setProfiling(false);
+        game.initialize(new HeadlessDisplay(800, 600), new ScriptedKeyboard().idle(1));
+        return game;
+    }
+
+    /**
+     * Restores a fresh stock game from the files of a store.
+     *
+     * @param snapshots the snapshot file
+     * @param journal   the journal file
+     * @return the restored game
+     * @throws IOException if the store cannot be read
+     */
+    private static Game restore(Path snapshots, Path journal) throws IOException {
+        Game game = fresh();
+        try (CheckpointStore store = new CheckpointStore(snapshots, journal)) {
+            check("a snapshot was found", store.restore(game));
+        }
+        return game;
+    }
+
+    /**
+     * Describes a game: its counters, then every sprite in the order they take their steps in,
+     * with the center and velocity of every ball and the rectangle of everything else.
+     *
+     * @param game the game
+     * @return the description
+     */
+    private static String describe(Game game) {
+        StringBuilder description = new StringBuilder();
+        description.append(game.getScore()).append(' ').append(game.getRemainingBalls()).append(' ')
+                .append(game.getsBlocksCounter());
+        SpriteCollection sprites = game.getSprites();
+        for (int i = 0; i < sprites.size(); i++) {
+            Sprite sprite = sprites.getSprite(i);
+            if (sprite instanceof Ball) {
+                Ball ball = (Ball) sprite;
+                description.append(String.format(Locale.ROOT, " ball(%s,%s %s,%s)", ball.getCenter().getX(),
+                        ball.getCenter().getY(), ball.getVelocity().getDx(), ball.getVelocity().getDy()));
+            } else if (sprite instanceof Collidable) {
+                Rectangle rect = ((Collidable) sprite).getCollisionRectangle();
+                description.append(String.format(Locale.ROOT, " %s(%s,%s)", sprite.getClass().getSimpleName(),
+                        rect.getMinx(), rect.getMiny()));
+            } else {
+                description.append(' ').append(sprite.getClass().getSimpleName());
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * Prints the result of a check, and remembers a failure.
+     *
+     * @param name the check
+     * @param ok   true if it passed
+     */
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "OK   " : "FAIL ") + name);
+        failed |= !ok;
+    }
+
+    /**
+     * Reads the slot capacity from the header of a snapshot file.
+     *
+     * @param file the snapshot file
+     * @return the slot capacity
+     * @throws IOException if the file cannot be read
+     */
+    private static int readCapacity(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN);
+            channel.read(header, CAPACITY_AT);
+            return header.getInt(0);
+        }
+    }
+
+    /**
+     * Writes the slot capacity into the header of a snapshot file.
+     *
+     * @param file     the snapshot file
+     * @param capacity the slot capacity
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeCapacity(Path file, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN);
+            header.putInt(0, capacity);
+            channel.write(header, CAPACITY_AT);
+        }
+    }
+}
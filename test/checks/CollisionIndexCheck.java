@@ -0,0 +1,259 @@
+package checks;
+
+import Gameps.AabbTreeIndex;
+import Gameps.Collidable;
+import Gameps.CollisionIndex;
+import Gameps.CollisionInfo;
+import Gameps.LinearScanIndex;
+import Gameps.UniformGridIndex;
+import Geometry.Line;
+import Geometry.Point;
+import Geometry.Rectangle;
+import sprites.Block;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * CollisionIndexCheck runs random sequences of adds, batch adds, moves, removes and queries
+ * against every collision index and against Gameps.LinearScanIndex, the reference, and checks
+ * that every query returns exactly the same collidable, collision point and time of impact.
+ * Coordinates are kept on a quarter-pixel lattice and some blocks are copies of others, so
+ * shared edges, corners and ties between equally close hits come up often, and some blocks
+ * stick out of the grid so its overflow list is covered too.
+ * It exits with status 1 on the first round that finds a mismatch.
+ * Usage: CollisionIndexCheck [--rounds=N] [--seed=N]
+ */
+public class CollisionIndexCheck {
+    private static final int DEFAULT_ROUNDS = 300;
+    private static final int OPERATIONS = 500;
+    private static final int BATCH = 200;
+    private static final int MAX_REPORTED = 5;
+
+    /**
+     * Runs the rounds and prints a summary.
+     *
+     * @param args the options
+     */
+    public static void main(String[] args) {
+        int rounds = DEFAULT_ROUNDS;
+        long seed = 1;
+        for (String arg : args) {
+            if (arg.startsWith("--rounds=")) {
+                rounds = Integer.parseInt(arg.substring("--rounds=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else {
+                throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+        long queries = 0;
+        for (int round = 0; round < rounds; round++) {
+            Round r = new Round(new Random(seed + round));
+            queries += r.run();
+            if (!r.mismatches.isEmpty()) {
+                System.out.println("Round " + round + " (seed " + (seed + round) + ") failed:");
+                for (String mismatch : r.mismatches) {
+                    System.out.println("  " + mismatch);
+                }
+                System.exit(1);
+            }
+        }
+        System.out.println("OK: " + rounds + " rounds, " + queries + " queries, every index agrees with the scan");
+    }
+
+    /**
+     * A single random sequence of operations, applied to the reference and to every index.
+     */
+    private static final class Round {
+        private final Random random;
+        private final CollisionIndex reference = new LinearScanIndex();
+        private final CollisionIndex[] candidates = {
+            new AabbTreeIndex(),
+            new UniformGridIndex(0, 0, 800, 600, 50),
+        };
+        private final List<Block> blocks = new ArrayList<>();
+        private final List<String> mismatches = new ArrayList<>();
+        private long nextOrder;
+
+        /**
+         * Constructs a Round.
+         *
+         * @param random the source of the operations
+         */
+        private Round(Random random) {
+            this.random = random;
+        }
+
+        /**
+         * Runs the operations of the round, stopping after the first few mismatches.
+         *
+         * @return the number of queries run
+         */
+        private int run() {
+            addBatch();
+            int queries = 0;
+            for (int i = 0; i < OPERATIONS && this.mismatches.size() < MAX_REPORTED; i++) {
+                int op = this.random.nextInt(100);
+                if (op < 30 || this.blocks.isEmpty()) {
+                    add(newBlock());
+                } else if (op < 45) {
+                    remove();
+                } else if (op < 55) {
+                    move();
+                } else if (op < 57) {
+                    addBatch();
+                } else {
+                    query();
+                    queries++;
+                }
+            }
+            return queries;
+        }
+
+        /**
+         * Makes a block on the quarter-pixel lattice, sometimes with the rectangle of another block.
+         *
+         * @return the block
+         */
+        private Block newBlock() {
+            if (!this.blocks.isEmpty() && this.random.nextInt(10) == 0) {
+                Rectangle other = this.blocks.get(this.random.nextInt(this.blocks.size())).getCollisionRectangle();
+                return new Block(new Rectangle(new Point(other.getMinx(), other.getMiny()),
+                        other.getWidth(), other.getHeight()), Color.gray);
+            }
+            Point upperLeft = new Point(lattice(-50, 850), lattice(-50, 650));
+            return new Block(new Rectangle(upperLeft, lattice(1, 80), lattice(1, 80)), Color.gray);
+        }
+
+        /**
+         * Returns a random coordinate on the quarter-pixel lattice.
+         *
+         * @param from the smallest value
+         * @param to   the largest value
+         * @return the coordinate
+         */
+        private double lattice(double from, double to) {
+            return from + this.random.nextInt((int) ((to - from) * 4) + 1) / 4.0;
+        }
+
+        /**
+         * Adds a block to every index.
+         *
+         * @param block the block
+         */
+        private void add(Block block) {
+            this.blocks.add(block);
+            this.reference.add(block, this.nextOrder);
+            for (CollisionIndex index : this.candidates) {
+                index.add(block, this.nextOrder);
+            }
+            this.nextOrder++;
+        }
+
+        /**
+         * Adds a batch of blocks to every index at once.
+         */
+        private void addBatch() {
+            int count = 1 + this.random.nextInt(BATCH);
+            Collidable[] batch = new Collidable[count];
+            for (int i = 0; i < count; i++) {
+                Block block = newBlock();
+                this.blocks.add(block);
+                batch[i] = block;
+            }
+            this.reference.addAll(batch, count, this.nextOrder);
+            for (CollisionIndex index : this.candidates) {
+                index.addAll(batch, count, this.nextOrder);
+            }
+            this.nextOrder += count;
+        }
+
+        /**
+         * Removes a random block from every index.
+         */
+        private void remove() {
+            int i = this.random.nextInt(this.blocks.size());
+            Block block = this.blocks.get(i);
+            this.blocks.set(i, this.blocks.get(this.blocks.size() - 1));
+            this.blocks.remove(this.blocks.size() - 1);
+            this.reference.remove(block);
+            for (CollisionIndex index : this.candidates) {
+                index.remove(block);
+            }
+        }
+
+        /**
+         * Moves a random block and updates every index.
+         */
+        private void move() {
+            Block block = this.blocks.get(this.random.nextInt(this.blocks.size()));
+            block.getCollisionRectangle().setPosition(lattice(-50, 850), lattice(-50, 650));
+            this.reference.update(block);
+            for (CollisionIndex index : this.candidates) {
+                index.update(block);
+            }
+        }
+
+        /**
+         * Runs a random query on every index and records any answer that differs from the scan.
+         */
+        private void query() {
+            double x = lattice(-60, 860);
+            double y = lattice(-60, 660);
+            double length = this.random.nextInt(4) == 0 ? 400 : 40;
+            Line trajectory = new Line(x, y, x + lattice(-length, length), y + lattice(-length, length));
+            double[] radii = {0, 6, lattice(0, 10)};
+            double radius = radii[this.random.nextInt(radii.length)];
+            CollisionInfo expected = this.reference.getClosestCollision(trajectory, radius);
+            for (CollisionIndex index : this.candidates) {
+                CollisionInfo actual = index.getClosestCollision(trajectory, radius);
+                if (!same(expected, actual)) {
+                    this.mismatches.add(String.format(Locale.ROOT,
+                            "%s: trajectory (%s,%s)->(%s,%s) radius %s: expected %s, got %s",
+                            index.getClass().getSimpleName(), trajectory.start().getX(), trajectory.start().getY(),
+                            trajectory.end().getX(), trajectory.end().getY(), radius,
+                            describe(expected), describe(actual)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if two answers to a query are exactly the same.
+     *
+     * @param a the first answer
+     * @param b the second answer
+     * @return true if both are no hit, or both hit the same collidable at the same point and time
+     */
+    private static boolean same(CollisionInfo a, CollisionInfo b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.collisionObject() == b.collisionObject()
+                && a.timeOfImpact() == b.timeOfImpact()
+                && a.collisionPoint().getX() == b.collisionPoint().getX()
+                && a.collisionPoint().getY() == b.collisionPoint().getY();
+    }
+
+    /**
+     * Describes an answer to a query for the report.
+     *
+     * @param info the answer
+     * @return the description
+     */
+    private static String describe(CollisionInfo info) {
+        if (info == null) {
+            return "no hit";
+        }
+        Rectangle rect = info.collisionObject().getCollisionRectangle();
+        return String.format(Locale.ROOT, "hit [%s,%s %sx%s] at (%s,%s) t=%s", rect.getMinx(), rect.getMiny(),
+                rect.getWidth(), rect.getHeight(), info.collisionPoint().getX(), info.collisionPoint().getY(),
+                info.timeOfImpact());
+    }
+}
@@ -0,0 +1,102 @@
+package checks;
+
+import Gameps.Game;
+import Gameps.HeadlessDisplay;
+import Gameps.LevelFile;
+import Gameps.ScriptedKeyboard;
+import Gameps.Velocity;
+import Geometry.Point;
+import Geometry.Rectangle;
+
+import java.awt.Color;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * HitBatchingCheck plays the same short scenes with hit events dispatched at once and batched
+ * until the end of the step, with Game.setBatchedHits(), and checks that both give the same
+ * score and the same counts. In every scene two balls hit the same thing in the same step,
+ * which is where batching could count a hit twice, or drop one it should keep.
+ * It exits with status 1 if any scene differs.
+ */
+public class HitBatchingCheck {
+    private static final int STEPS = 30;
+
+    /**
+     * The scenes, each with two balls hitting the same thing in the same step.
+     */
+    private enum Scene {
+        /** Two balls hit a block that the first hit removes. */
+        REMOVABLE_BLOCK,
+        /** Two balls hit a block that stays and scores on every hit. */
+        SCORING_BLOCK,
+        /** Two balls fall into the death region together. */
+        DEATH_REGION
+    }
+
+    /**
+     * Plays every scene in both modes and prints the results.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        boolean failed = false;
+        for (Scene scene : Scene.values()) {
+            String direct = play(scene, false);
+            String batched = play(scene, true);
+            boolean same = direct.equals(batched);
+            failed |= !same;
+            System.out.println((same ? "OK   " : "FAIL ") + scene + ": at once " + direct + ", batched " + batched);
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Plays a scene for a fixed number of steps.
+     *
+     * @param scene   the scene
+     * @param batched true to batch the hit events of every step
+     * @return the score, the remaining balls and whether the game is over, at the end
+     */
+    private static String play(Scene scene, boolean batched) {
+        Game game = new Game();
+        game.setProfiling(false);
+        game.setBatchedHits(batched);
+        game.initializeArena(new HeadlessDisplay(800, 600), new ScriptedKeyboard());
+        // A block out of every ball's way, so clearing the scene's block does not end the game
+        game.addLevelBlock(new Rectangle(new Point(650, 60), 50, 20), Color.gray);
+        switch (scene) {
+            case REMOVABLE_BLOCK:
+                game.addLevelBlock(new Rectangle(new Point(300, 200), 50, 20), Color.red);
+                addPair(game, 240, -5);
+                break;
+            case SCORING_BLOCK:
+                game.addLevelBlock(new Rectangle(new Point(300, 200), 50, 20), Color.red, LevelFile.SCORING);
+                addPair(game, 240, -5);
+                break;
+            default:
+                addPair(game, 590, 5);
+                // A ball that stays in play, bouncing between the side walls
+                game.addBall(new Point(400, 300), 6, Color.blue, new Velocity(5, 0));
+                break;
+        }
+        game.runHeadless(STEPS);
+        return "score " + game.getScore() + " balls " + game.getRemainingBalls() + " over " + game.isOver();
+    }
+
+    /**
+     * Adds two balls side by side, moving straight up or down at the same speed, so they hit
+     * whatever is in their way in the same step.
+     *
+     * @param game the game
+     * @param y    the y-coordinate of the centers of the balls
+     * @param dy   the vertical velocity of the balls
+     */
+    private static void addPair(Game game, double y, double dy) {
+        double x = dy < 0 ? 310 : 100;
+        game.addBall(new Point(x, y), 6, Color.white, new Velocity(0, dy));
+        game.addBall(new Point(x + 30, y), 6, Color.white, new Velocity(0, dy));
+    }
+}
@@ -0,0 +1,123 @@
+package checks;
+
+import Gameps.Game;
+import Gameps.HeadlessDisplay;
+import Gameps.ScriptedKeyboard;
+import Gameps.Velocity;
+import Geometry.Point;
+import Geometry.Rectangle;
+import sprites.Ball;
+import sprites.Sprite;
+import sprites.SpriteCollection;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Author: Ofek Mazor
+ * ID: 328285705
+ * ReplayCheck records short games with Game.startRecording(), each with different settings,
+ * plays every recording back with Game.replay(), and checks that the replay ends exactly where
+ * the recorded game did: the same score, the same balls left, and every ball at the same place
+ * with the same velocity. The scenes are chosen so that each setting changes how they end.
+ * It exits with status 1 if any replay differs.
+ */
+public class ReplayCheck {
+    private static final int STEPS = 40;
+
+    /**
+     * The settings a scene is recorded with.
+     */
+    private enum Settings {
+        /** Nothing changed. */
+        DEFAULTS,
+        /** Hit events batched until the end of the step. */
+        BATCHED_HITS,
+        /** A single bounce per step for every ball. */
+        ONE_BOUNCE,
+        /** Batched hits, two bounces per step, and 120 steps per second. */
+        ALL
+    }
+
+    /**
+     * Records and replays every scene with every settings, and prints the results.
+     *
+     * @param args unused
+     * @throws IOException if a recording cannot be read back
+     */
+    public static void main(String[] args) throws IOException {
+        boolean failed = false;
+        for (Settings settings : Settings.values()) {
+            ByteArrayOutputStream recording = new ByteArrayOutputStream();
+            Game recorded = build(settings, recording);
+            recorded.runHeadless(STEPS);
+            recorded.stopRecording();
+            Game replayed = Game.replay(new ByteArrayInputStream(recording.toByteArray()));
+            replayed.runHeadless(Long.MAX_VALUE);
+            String expected = describe(recorded);
+            String actual = describe(replayed);
+            boolean same = expected.equals(actual);
+            failed |= !same;
+            System.out.println((same ? "OK   " : "FAIL ") + settings + ": recorded " + expected
+                    + (same ? "" : ", replayed " + actual));
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Builds the scene while recording it: two balls that hit the same block in the same step,
+     * which batching changes, and a fast ball that bounces in a corner several times a step,
+     * which the bounces per step change.
+     *
+     * @param settings  the settings to record with
+     * @param recording the stream to record into
+     * @return the game, ready to run
+     */
+    private static Game build(Settings settings, ByteArrayOutputStream recording) {
+        Game game = new Game();
+        game.setProfiling(false);
+        game.startRecording(recording);
+        game.initializeArena(new HeadlessDisplay(800, 600), new ScriptedKeyboard().left(30).right(60).left(30));
+        game.addLevelBlock(new Rectangle(new Point(300, 200), 50, 20), Color.red);
+        game.addLevelBlock(new Rectangle(new Point(650, 60), 50, 20), Color.gray);
+        game.addBall(new Point(310, 240), 6, Color.white, new Velocity(0, -5));
+        game.addBall(new Point(340, 240), 6, Color.white, new Velocity(0, -5));
+        game.addBall(new Point(32, 34), 6, Color.blue, new Velocity(-19, -17));
+        if (settings == Settings.BATCHED_HITS || settings == Settings.ALL) {
+            game.setBatchedHits(true);
+        }
+        if (settings == Settings.ONE_BOUNCE) {
+            game.setMaxBouncesPerTick(1);
+        } else if (settings == Settings.ALL) {
+            game.setMaxBouncesPerTick(2);
+            game.setSimulationRate(120);
+        }
+        return game;
+    }
+
+    /**
+     * Describes where a game ended.
+     *
+     * @param game the game
+     * @return the score, the balls left, and the center and velocity of every ball
+     */
+    private static String describe(Game game) {
+        StringBuilder description = new StringBuilder();
+        description.append("score ").append(game.getScore()).append(" balls ").append(game.getRemainingBalls());
+        SpriteCollection sprites = game.getSprites();
+        for (int i = 0; i < sprites.size(); i++) {
+            Sprite sprite = sprites.getSprite(i);
+            if (sprite instanceof Ball) {
+                Ball ball = (Ball) sprite;
+                description.append(String.format(Locale.ROOT, " (%s,%s %s,%s)", ball.getCenter().getX(),
+                        ball.getCenter().getY(), ball.getVelocity().getDx(), ball.getVelocity().getDy()));
+            }
+        }
+        return description.toString();
+    }
+}